@@ -0,0 +1,252 @@
+package addressbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Regression benchmarks for the operations of AddressBook at several book sizes: addEntry,
+ * searchEntry with selective and broad hits and with misses through the trigram index and through
+ * a scan, removeEntryById, saveToFile and readFromFile. Every benchmark runs warm-up iterations
+ * before the measured ones and reports the time per operation; the books come from
+ * SyntheticEntries with a fixed seed, so runs are comparable.
+ *
+ * <p>
+ * The results are printed and written as JSON, one object per benchmark and book size, so that
+ * runs can be compared over time. Usage:
+ *
+ * <pre>
+ * AddressBookBenchmark [output.json [size ...]]
+ * </pre>
+ *
+ * @author Lei Guo
+ */
+public class AddressBookBenchmark {
+  private static final String DEFAULT_OUTPUT = "benchmark-results.json";
+  private static final int[] DEFAULT_SIZES = {1_000, 10_000, 100_000};
+  private static final long SEED = 42;
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int MEASURED_ITERATIONS = 10;
+  private static final int SEARCHES_PER_ITERATION = 100;
+  private static final int REMOVALS_PER_ITERATION = 1_000;
+
+  /**
+   * The timing of one benchmark at one book size, over the measured iterations.
+   */
+  private static final class Result {
+    private final String benchmark;
+    private final int bookSize;
+    private final int operationsPerIteration;
+    private final double[] nanosPerOperation;
+
+    private Result(String benchmark, int bookSize, int operationsPerIteration,
+        double[] nanosPerOperation) {
+      this.benchmark = benchmark;
+      this.bookSize = bookSize;
+      this.operationsPerIteration = operationsPerIteration;
+      this.nanosPerOperation = nanosPerOperation;
+    }
+
+    private double mean() {
+      double sum = 0;
+      for (double nanos : nanosPerOperation) {
+        sum += nanos;
+      }
+      return sum / nanosPerOperation.length;
+    }
+
+    private double standardDeviation() {
+      double mean = mean();
+      double sum = 0;
+      for (double nanos : nanosPerOperation) {
+        sum += (nanos - mean) * (nanos - mean);
+      }
+      return Math.sqrt(sum / nanosPerOperation.length);
+    }
+
+    private double percentile(double fraction) {
+      double[] sorted = nanosPerOperation.clone();
+      Arrays.sort(sorted);
+      return sorted[(int) Math.min(sorted.length - 1, Math.floor(fraction * sorted.length))];
+    }
+  }
+
+  /**
+   * One measured iteration. Setup done before timing starts is not measured.
+   */
+  private interface Iteration {
+    /**
+     * Run the iteration.
+     *
+     * @return The time taken by the measured part, in nanoseconds.
+     */
+    long run() throws IOException;
+  }
+
+  public static void main(String[] args) throws IOException {
+    String output = args.length > 0 ? args[0] : DEFAULT_OUTPUT;
+    int[] sizes = DEFAULT_SIZES;
+    if (args.length > 1) {
+      sizes = new int[args.length - 1];
+      for (int i = 1; i < args.length; i++) {
+        sizes[i - 1] = Integer.parseInt(args[i]);
+      }
+    }
+
+    List<Result> results = new ArrayList<>();
+    File file = File.createTempFile("address-book-benchmark", ".json");
+    file.deleteOnExit();
+    String path = file.getPath();
+    System.out.printf("%-28s %10s %14s %12s%n", "benchmark", "entries", "ns/op", "stddev");
+    for (int size : sizes) {
+      List<BookEntry> source = SyntheticEntries.generate(size, SEED);
+      AddressBook loaded = load(source);
+      // the email address of one entry matches it alone, and a domain matches a fifth of the book
+      String selective = source.get(size / 2).getEmailAddress();
+
+      results.add(report(measure("addEntry", size, size, () -> {
+        List<BookEntry> copies = SyntheticEntries.copy(source);
+        AddressBook addressBook = new AddressBook();
+        long start = System.nanoTime();
+        for (BookEntry bookEntry : copies) {
+          addressBook.addEntry(bookEntry);
+        }
+        return System.nanoTime() - start;
+      })));
+      results.add(report(measureSearch("searchEntry.hit.selective", loaded, selective)));
+      results.add(report(measureSearch("searchEntry.hit.broad", loaded, "nyu.edu")));
+      results.add(report(measureSearch("searchEntry.miss.indexed", loaded, "qqxz")));
+      results.add(report(measureSearch("searchEntry.miss.scan", loaded, "#")));
+
+      int removals = Math.min(REMOVALS_PER_ITERATION, size);
+      Random random = new Random(SEED);
+      results.add(report(measure("removeEntryById", size, removals, () -> {
+        AddressBook addressBook = load(SyntheticEntries.copy(source));
+        int[] ids = randomIds(random, size, removals);
+        long start = System.nanoTime();
+        for (int id : ids) {
+          addressBook.removeEntryById(id);
+        }
+        return System.nanoTime() - start;
+      })));
+
+      results.add(report(measure("saveToFile", size, 1, () -> {
+        long start = System.nanoTime();
+        loaded.saveToFile(path);
+        return System.nanoTime() - start;
+      })));
+      results.add(report(measure("readFromFile", size, 1, () -> {
+        AddressBook addressBook = new AddressBook();
+        long start = System.nanoTime();
+        addressBook.readFromFile(path);
+        long elapsed = System.nanoTime() - start;
+        check(addressBook.size() == size, "readFromFile read a different book");
+        return elapsed;
+      })));
+    }
+
+    write(output, results);
+    System.out.println("Results written to " + output);
+  }
+
+  private static Result measureSearch(String benchmark, AddressBook addressBook, String query)
+      throws IOException {
+    int expected = addressBook.searchEntry(query).size();
+    return measure(benchmark, addressBook.size(), SEARCHES_PER_ITERATION, () -> {
+      long start = System.nanoTime();
+      for (int i = 0; i < SEARCHES_PER_ITERATION; i++) {
+        check(addressBook.searchEntry(query).size() == expected, "Search results changed");
+      }
+      return System.nanoTime() - start;
+    });
+  }
+
+  private static Result measure(String benchmark, int bookSize, int operations,
+      Iteration iteration) throws IOException {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      iteration.run();
+    }
+    double[] nanosPerOperation = new double[MEASURED_ITERATIONS];
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      nanosPerOperation[i] = (double) iteration.run() / operations;
+    }
+    return new Result(benchmark, bookSize, operations, nanosPerOperation);
+  }
+
+  private static Result report(Result result) {
+    System.out.printf("%-28s %10d %14.1f %12.1f%n", result.benchmark, result.bookSize,
+        result.mean(), result.standardDeviation());
+    return result;
+  }
+
+  private static void write(String output, List<Result> results) throws IOException {
+    try (JsonWriter writer =
+        new JsonWriter(Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8))) {
+      writer.setIndent("  ");
+      writer.beginObject();
+      writer.name("timestamp").value(System.currentTimeMillis());
+      writer.name("javaVersion").value(System.getProperty("java.version"));
+      writer.name("availableProcessors").value(Runtime.getRuntime().availableProcessors());
+      writer.name("warmupIterations").value(WARMUP_ITERATIONS);
+      writer.name("measuredIterations").value(MEASURED_ITERATIONS);
+      writer.name("results").beginArray();
+      for (Result result : results) {
+        writer.beginObject();
+        writer.name("benchmark").value(result.benchmark);
+        writer.name("bookSize").value(result.bookSize);
+        writer.name("operationsPerIteration").value(result.operationsPerIteration);
+        writer.name("meanNanosPerOperation").value(result.mean());
+        writer.name("stddevNanosPerOperation").value(result.standardDeviation());
+        writer.name("p50NanosPerOperation").value(result.percentile(0.5));
+        writer.name("maxNanosPerOperation").value(result.percentile(1));
+        writer.name("iterations").beginArray();
+        for (double nanos : result.nanosPerOperation) {
+          writer.value(nanos);
+        }
+        writer.endArray();
+        writer.endObject();
+      }
+      writer.endArray();
+      writer.endObject();
+    }
+  }
+
+  private static AddressBook load(List<BookEntry> source) {
+    AddressBook addressBook = new AddressBook();
+    for (BookEntry bookEntry : source) {
+      addressBook.addEntry(bookEntry);
+    }
+    check(addressBook.size() == source.size(), "Generated entries are not distinct");
+    return addressBook;
+  }
+
+  /**
+   * Pick distinct ids of a book of the given size, which hands out ids from 0.
+   */
+  private static int[] randomIds(Random random, int size, int count) {
+    int[] ids = new int[size];
+    for (int i = 0; i < size; i++) {
+      ids[i] = i;
+    }
+    for (int i = 0; i < count; i++) {
+      int j = i + random.nextInt(size - i);
+      int swap = ids[i];
+      ids[i] = ids[j];
+      ids[j] = swap;
+    }
+    return Arrays.copyOf(ids, count);
+  }
+
+  private static void check(boolean condition, String message) {
+    if (!condition) {
+      throw new IllegalStateException(message);
+    }
+  }
+}
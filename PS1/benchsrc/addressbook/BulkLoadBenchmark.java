@@ -0,0 +1,71 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures loading books of growing size through AddressBook.addEntry, next to the linear
+ * duplicate check addEntry used to do. Constant time per entry means the load grows linearly.
+ *
+ * @author Lei Guo
+ */
+public class BulkLoadBenchmark {
+  private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+  // The linear check is quadratic, so it is only run for the smaller books
+  private static final int LINEAR_CHECK_MAX_SIZE = 100_000;
+
+  public static void main(String[] args) {
+    System.out.printf("%10s %16s %14s %16s %14s%n", "entries", "fingerprint ms", "ns/entry",
+        "linear check ms", "ns/entry");
+    for (int size : SIZES) {
+      List<BookEntry> source = SyntheticEntries.generate(size, 42);
+
+      // Warm up on a small book first so the JIT has compiled the add path
+      loadWithFingerprints(SyntheticEntries.generate(10_000, 7));
+      long fingerprintNanos = loadWithFingerprints(source);
+
+      String linear = "-";
+      String linearPerEntry = "-";
+      if (size <= LINEAR_CHECK_MAX_SIZE) {
+        long linearNanos = loadWithLinearCheck(source);
+        linear = String.valueOf(linearNanos / 1_000_000);
+        linearPerEntry = String.valueOf(linearNanos / size);
+      }
+      System.out.printf("%10d %16d %14d %16s %14s%n", size, fingerprintNanos / 1_000_000,
+          fingerprintNanos / size, linear, linearPerEntry);
+    }
+  }
+
+  private static long loadWithFingerprints(List<BookEntry> source) {
+    List<BookEntry> copies = SyntheticEntries.copy(source);
+    AddressBook addressBook = new AddressBook();
+    long start = System.nanoTime();
+    for (BookEntry bookEntry : copies) {
+      addressBook.addEntry(bookEntry);
+    }
+    long elapsed = System.nanoTime() - start;
+    if (addressBook.size() != source.size()) {
+      throw new IllegalStateException("Generated entries are not distinct");
+    }
+    return elapsed;
+  }
+
+  private static long loadWithLinearCheck(List<BookEntry> source) {
+    List<BookEntry> copies = SyntheticEntries.copy(source);
+    List<BookEntry> entryList = new ArrayList<>();
+    long start = System.nanoTime();
+    for (BookEntry bookEntry : copies) {
+      boolean duplicate = false;
+      for (BookEntry existing : entryList) {
+        if (existing.hasSameContent(bookEntry)) {
+          duplicate = true;
+          break;
+        }
+      }
+      if (!duplicate) {
+        entryList.add(bookEntry);
+      }
+    }
+    return System.nanoTime() - start;
+  }
+}
@@ -0,0 +1,81 @@
+package addressbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Measures the size of a saved book against the time to save and to read it back, for the plain
+ * JSON file and for GZIP at every compression level, with pretty printing as saveToFile does by
+ * default. Every variant is saved and read a few times to warm up before being measured. Usage:
+ *
+ * <pre>
+ * CompressionBenchmark [entries]
+ * </pre>
+ *
+ * @author Lei Guo
+ */
+public class CompressionBenchmark {
+  private static final int DEFAULT_SIZE = 100_000;
+  private static final long SEED = 42;
+  private static final int WARMUP_ITERATIONS = 2;
+  private static final int MEASURED_ITERATIONS = 5;
+  // Stands for the plain file in the table of levels
+  private static final int PLAIN = Integer.MIN_VALUE;
+
+  public static void main(String[] args) throws IOException {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+    List<BookEntry> source = SyntheticEntries.generate(size, SEED);
+    AddressBook addressBook = new AddressBook();
+    for (BookEntry bookEntry : source) {
+      addressBook.addEntry(bookEntry);
+    }
+    File file = File.createTempFile("address-book-compression", ".json");
+    file.deleteOnExit();
+    String path = file.getPath();
+
+    int[] levels = {PLAIN, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+    long plainLength = 0;
+    System.out.printf("%8s %14s %8s %10s %10s%n", "level", "bytes", "ratio", "save ms",
+        "read ms");
+    for (int level : levels) {
+      for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+        save(addressBook, path, level);
+        read(path, size);
+      }
+      long saveNanos = 0;
+      long readNanos = 0;
+      for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+        long start = System.nanoTime();
+        save(addressBook, path, level);
+        saveNanos += System.nanoTime() - start;
+        start = System.nanoTime();
+        read(path, size);
+        readNanos += System.nanoTime() - start;
+      }
+      long length = file.length();
+      if (level == PLAIN) {
+        plainLength = length;
+      }
+      System.out.printf("%8s %14d %8.3f %10.1f %10.1f%n", level == PLAIN ? "plain" : level,
+          length, (double) length / plainLength, saveNanos / 1e6 / MEASURED_ITERATIONS,
+          readNanos / 1e6 / MEASURED_ITERATIONS);
+    }
+  }
+
+  private static void save(AddressBook addressBook, String path, int level) throws IOException {
+    if (level == PLAIN) {
+      addressBook.saveToFile(path, true);
+    } else {
+      addressBook.saveToFile(path, true, level);
+    }
+  }
+
+  private static void read(String path, int size) throws IOException {
+    AddressBook addressBook = new AddressBook();
+    addressBook.readFromFile(path);
+    if (addressBook.size() != size) {
+      throw new IllegalStateException("readFromFile read a different book");
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package addressbook;
+
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Measures the heap retained by AddressBook, ConcurrentAddressBook and CompactAddressBook holding
+ * the same synthetic entries. The retained heap is the used heap after a full collection with the
+ * book loaded, minus the used heap before it was created. Run with the serial collector and room
+ * for the largest book, e.g. -XX:+UseSerialGC -Xmx3g, so that System.gc() is a full collection.
+ *
+ * @author Lei Guo
+ */
+public class MemoryFootprintBenchmark {
+  private static final int[] SIZES = {100_000, 1_000_000};
+
+  // Keeps the measured book reachable while the heap is measured
+  private static Object retained;
+
+  public static void main(String[] args) {
+    System.out.printf("%10s %22s %14s %14s%n", "entries", "book", "retained MB", "bytes/entry");
+    for (int size : SIZES) {
+      measure(size, "AddressBook", AddressBook::new, AddressBook::addEntry);
+      measure(size, "ConcurrentAddressBook", ConcurrentAddressBook::new,
+          ConcurrentAddressBook::addEntry);
+      measure(size, "CompactAddressBook", CompactAddressBook::new, CompactAddressBook::addEntry);
+    }
+  }
+
+  private static <T> void measure(int size, String name, Supplier<T> factory,
+      EntryAdder<T> adder) {
+    long before = usedHeap();
+    T book = factory.get();
+    // Entries are generated one at a time, so the only references left to them are the book's
+    generate(size, bookEntry -> adder.add(book, bookEntry));
+    retained = book;
+    long after = usedHeap();
+    retained = null;
+
+    long bytes = after - before;
+    System.out.printf("%10d %22s %14.1f %14d%n", size, name, bytes / (1024.0 * 1024.0),
+        bytes / size);
+  }
+
+  private static void generate(int count, Consumer<BookEntry> consumer) {
+    Random random = new Random(42);
+    for (int i = 0; i < count; i++) {
+      consumer.accept(SyntheticEntries.generate(random, i));
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    // Collect until the used heap stops shrinking, as one call may not finish the job
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      long current = runtime.totalMemory() - runtime.freeMemory();
+      if (current >= used) {
+        break;
+      }
+      used = current;
+    }
+    return used;
+  }
+
+  private interface EntryAdder<T> {
+    void add(T book, BookEntry bookEntry);
+  }
+}
@@ -0,0 +1,60 @@
+package addressbook;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares AddressBook.searchEntry with searchEntryParallel on fork/join pools of 1, 4, 16 and 64
+ * threads, for a query too short for the trigram index (a full scan) and for a broad query whose
+ * many index candidates all have to be checked.
+ *
+ * @author Lei Guo
+ */
+public class ParallelSearchBenchmark {
+  private static final int BOOK_SIZE = 1_000_000;
+  private static final int[] PARALLELISM = {1, 4, 16, 64};
+  private static final String[] QUERIES = {"12", "nyu.edu"};
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int MEASURED_ITERATIONS = 20;
+
+  public static void main(String[] args) {
+    AddressBook addressBook = new AddressBook();
+    for (BookEntry bookEntry : SyntheticEntries.generate(BOOK_SIZE, 42)) {
+      addressBook.addEntry(bookEntry);
+    }
+
+    System.out.printf("%10s %12s %10s %12s%n", "query", "mode", "threads", "ms/search");
+    for (String query : QUERIES) {
+      int expected = addressBook.searchEntry(query).size();
+      double sequential = measure(() -> addressBook.searchEntry(query), expected);
+      System.out.printf("%10s %12s %10d %12.2f%n", query, "sequential", 1, sequential);
+
+      for (int parallelism : PARALLELISM) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+          double parallel = measure(() -> addressBook.searchEntryParallel(query, pool), expected);
+          System.out.printf("%10s %12s %10d %12.2f%n", query, "parallel", parallelism, parallel);
+        } finally {
+          pool.shutdown();
+        }
+      }
+    }
+  }
+
+  private interface Search {
+    List<BookEntry> run();
+  }
+
+  private static double measure(Search search, int expected) {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      search.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      if (search.run().size() != expected) {
+        throw new IllegalStateException("Parallel search returned different results");
+      }
+    }
+    return (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+  }
+}
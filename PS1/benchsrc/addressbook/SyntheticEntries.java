@@ -0,0 +1,94 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of realistic-looking, valid and distinct book entries for benchmarks.
+ * The same seed always yields the same entries.
+ *
+ * @author Lei Guo
+ */
+public class SyntheticEntries {
+  private static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert",
+      "Jennifer", "Michael", "Linda", "William", "Elizabeth", "David", "Barbara", "Richard",
+      "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen", "Lei", "Wei", "Yan",
+      "Jose"};
+  private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones",
+      "Garcia", "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez",
+      "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin", "Guo", "Wang", "Li"};
+  private static final String[] STREETS = {"Broadway", "Main St", "Washington Sq", "Mercer St",
+      "Bleecker St", "Houston St", "Lafayette St", "Park Ave", "Lexington Ave", "Madison Ave"};
+  private static final String[] CITIES = {"New York, NY 10012", "New York, NY 10003",
+      "Brooklyn, NY 11201", "Jersey City, NJ 07310", "Hoboken, NJ 07030", "Queens, NY 11101"};
+  private static final String[] DOMAINS = {"nyu.edu", "gmail.com", "yahoo.com", "outlook.com",
+      "example.org"};
+  private static final String[] NOTES = {"friend", "colleague", "family", "classmate", "client",
+      "call after 6pm", "met at conference"};
+
+  private SyntheticEntries() {}
+
+  /**
+   * Generate book entries.
+   *
+   * @param count The number of entries to be generated.
+   * @param seed The seed of the generator.
+   * @return The generated entries, pairwise different in content.
+   */
+  public static List<BookEntry> generate(int count, long seed) {
+    Random random = new Random(seed);
+    List<BookEntry> entries = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      entries.add(generate(random, i));
+    }
+    return entries;
+  }
+
+  /**
+   * Copy book entries into fresh entries with the same content and no id, so that every run of a
+   * benchmark adds entries which were never in a book.
+   *
+   * @param source The entries to be copied.
+   * @return The copies, in the same order.
+   */
+  public static List<BookEntry> copy(List<BookEntry> source) {
+    List<BookEntry> copies = new ArrayList<>(source.size());
+    for (BookEntry bookEntry : source) {
+      copies.add(new BookEntry.Builder(bookEntry.getName())
+          .phoneNumber(bookEntry.getPhoneNumber()).emailAddress(bookEntry.getEmailAddress())
+          .postalAddress(bookEntry.getPostalAddress()).note(bookEntry.getNote()).build());
+    }
+    return copies;
+  }
+
+  /**
+   * Generate one book entry. The serial number is embedded in the email address, which keeps
+   * entries with different serial numbers distinct.
+   *
+   * @param random The source of randomness.
+   * @param serial The serial number of the entry.
+   * @return The generated entry.
+   */
+  public static BookEntry generate(Random random, int serial) {
+    String first = pick(random, FIRST_NAMES);
+    String last = pick(random, LAST_NAMES);
+    BookEntry.Builder builder = new BookEntry.Builder(first + " " + last)
+        .emailAddress(first.toLowerCase() + "." + last.toLowerCase() + serial + "@"
+            + pick(random, DOMAINS))
+        .phoneNumber(String.format("+1 (%03d) %03d-%04d", 200 + random.nextInt(800),
+            random.nextInt(1000), random.nextInt(10000)));
+    if (random.nextInt(4) != 0) {
+      builder.postalAddress((1 + random.nextInt(999)) + " " + pick(random, STREETS) + ", "
+          + pick(random, CITIES));
+    }
+    if (random.nextInt(3) == 0) {
+      builder.note(pick(random, NOTES));
+    }
+    return builder.build();
+  }
+
+  private static String pick(Random random, String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+}
@@ -1,18 +1,35 @@
 package addressbook;
 
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Reader;
 import java.io.Writer;
-import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.Deflater;
 
 /**
  * This class represents an address book which stores contact entries and be able to add, remove,
@@ -20,48 +37,185 @@ import com.google.gson.reflect.TypeToken;
  * 
  * @author Lei Guo
  */
-public class AddressBook {
-  private List<BookEntry> entryList;
+public class AddressBook implements EntryBook {
+  /** Below this many entries to check, parallel searches run sequentially. */
+  static final int PARALLEL_THRESHOLD = 1 << 14;
+  private static final int IO_BUFFER_SIZE = 1 << 16;
+
+  private EntryStore entries;
+  private Set<EntryFingerprint> fingerprints;
+  private TrigramIndex trigramIndex;
+  private FieldIndex fieldIndex;
+  // Built on first use, and kept up to date from then on
+  private PrefixIndex nameCompletions;
+  private PrefixIndex emailCompletions;
+  private FuzzyIndex fuzzyIndex;
+  private PhoneticIndex phoneticIndex;
+  private TrigramIndex foldedTrigramIndex;
   private int nextId;
+  private AddressBookJournal journal;
+  private MetricsListener metrics;
+  private QueryCache queryCache;
+  // bumped by every mutation, so that cached results of another version are stale
+  private long version;
+  // copied on write, so a listener may add or remove listeners while an event is published
+  private final List<ChangeListener> changeListeners;
+  // the sequence number of the last change
+  private long changeSequence;
 
   /**
    * Constructor for AddressBook
    */
   public AddressBook() {
-    this.entryList = new ArrayList<>();
+    this.entries = new EntryStore();
+    this.fingerprints = new HashSet<>();
+    this.trigramIndex = new TrigramIndex();
+    this.fieldIndex = new FieldIndex();
     this.nextId = 0;
+    this.changeListeners = new CopyOnWriteArrayList<>();
   }
 
   /**
    * Add a new BookEntry to the AddressBook.
    * 
    * @param bookEntry The book entry to be added.
-   * @return true if the book entry could be add to the address book successfully.
+   * @return true if the book entry could be add to the address book successfully, false if an
+   *         entry with the same content is already in it.
    */
+  @Override
   public boolean addEntry(BookEntry bookEntry) {
     if (bookEntry == null) {
       throw new NullPointerException("Contact cannot be null");
-    } else if (entryList.contains(bookEntry)) {
+    } else if (!fingerprints.add(new EntryFingerprint(bookEntry))) {
       return false;
     } else {
-      bookEntry.setId(nextId);
-      nextId++;
-      entryList.add(bookEntry);
+      append(bookEntry, nextId);
       return true;
     }
   }
 
+  /**
+   * Add a BookEntry under an id handed out by the caller, as the shards of a ShardedAddressBook
+   * do. The caller has already made sure no entry with the same content is in the book.
+   * 
+   * @param bookEntry The book entry to be added.
+   * @param id The id of the entry, greater than the ids already in the book.
+   */
+  void addEntryWithId(BookEntry bookEntry, int id) {
+    fingerprints.add(new EntryFingerprint(bookEntry));
+    append(bookEntry, id);
+  }
+
+  /**
+   * Import records in bulk, validating them across the common fork/join pool.
+   * 
+   * @param records The records to be imported; see importRecords(List, ForkJoinPool).
+   * @return The report of the records added and of those which were not.
+   */
+  public ImportReport importRecords(List<String[]> records) {
+    return importRecords(records, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Import records in bulk. Every record holds five values, in order: the name, the phone number,
+   * the email address, the postal address and the note, all but the name possibly null. Records
+   * are validated as by BookEntry.Builder, in parallel across a fork/join pool when there are at
+   * least PARALLEL_THRESHOLD of them. An invalid record or one whose content is already in the
+   * book does not stop the import: it is skipped and reported. The valid records are added in list
+   * order, getting ids as if they were added one by one, and the indexes are built once all of
+   * them are in.
+   * 
+   * @param records The records to be imported.
+   * @param pool The pool to validate the records in.
+   * @return The report of the records added and of those which were not.
+   */
+  public ImportReport importRecords(List<String[]> records, ForkJoinPool pool) {
+    if (records == null) {
+      throw new NullPointerException("Records cannot be null");
+    }
+    if (pool == null) {
+      throw new NullPointerException("Pool cannot be null");
+    }
+    // validation reads the records by index
+    List<String[]> list = records instanceof RandomAccess ? records : new ArrayList<>(records);
+    int count = list.size();
+    BookEntry[] built = new BookEntry[count];
+    EntryFingerprint[] builtFingerprints = new EntryFingerprint[count];
+    String[] invalid = new String[count];
+    ImportValidation validation =
+        new ImportValidation(list, built, builtFingerprints, invalid, 0, count);
+    if (count < PARALLEL_THRESHOLD) {
+      validation.validate();
+    } else {
+      pool.invoke(validation);
+    }
+
+    List<ImportReport.RecordError> errors = new ArrayList<>();
+    List<BookEntry> added = new ArrayList<>(count);
+    int duplicateCount = 0;
+    for (int i = 0; i < count; i++) {
+      if (built[i] == null) {
+        errors.add(new ImportReport.RecordError(i, invalid[i]));
+      } else if (!fingerprints.add(builtFingerprints[i])) {
+        errors.add(new ImportReport.RecordError(i, "The contact already exists"));
+        duplicateCount++;
+      } else {
+        BookEntry bookEntry = built[i];
+        bookEntry.setId(nextId);
+        nextId++;
+        entries.add(bookEntry);
+        added.add(bookEntry);
+      }
+    }
+
+    if (added.size() > entries.size() - added.size()) {
+      // cheaper to rebuild the lazy indexes on their next use than to update them now
+      nameCompletions = null;
+      emailCompletions = null;
+      fuzzyIndex = null;
+      phoneticIndex = null;
+      foldedTrigramIndex = null;
+    }
+    for (BookEntry bookEntry : added) {
+      index(bookEntry);
+    }
+    if (!added.isEmpty()) {
+      version++;
+    }
+    // Journaled only once the entries are indexed, as append does, so a failing log leaves them
+    // searchable rather than half added
+    for (BookEntry bookEntry : added) {
+      if (journal != null) {
+        journal.logAdd(bookEntry, bookEntry.getId() + 1);
+      }
+      publish(ChangeEvent.Type.ADDED, bookEntry);
+    }
+    return new ImportReport(count, added.size(), duplicateCount, errors);
+  }
+
   /**
    * Remove an BookEntry (Object) from the AddressBook.
    * 
    * @param bookEntry The book entry to be removed.
    * @return true if the book entry could be removed successfully.
    */
+  @Override
   public boolean removeEntry(BookEntry bookEntry) {
     if (bookEntry == null) {
       throw new NullPointerException("Contact cannot be null");
     }
-    return entryList.remove(bookEntry);
+    if (!contains(bookEntry)) {
+      return false;
+    }
+    BookEntry removed = entries.remove(bookEntry.getId());
+    fingerprints.remove(new EntryFingerprint(removed));
+    unindex(removed);
+    version++;
+    if (journal != null) {
+      journal.logRemove(removed.getId());
+    }
+    publish(ChangeEvent.Type.REMOVED, removed);
+    return true;
   }
 
   /**
@@ -70,45 +224,481 @@ public class AddressBook {
    * @param id The id of the book entry to be removed.
    * @return The book entry removed.
    */
+  @Override
   public BookEntry removeEntryById(int id) {
     if (id < 0) {
       throw new IllegalArgumentException("Contact id cannot be less than 0");
     }
 
-    for (int i = 0; i < entryList.size(); i++) {
-      BookEntry bookEntry = entryList.get(i);
-      if (bookEntry.getId() == id) {
-        return entryList.remove(id);
-      }
+    BookEntry bookEntry = entries.remove(id);
+    if (bookEntry == null) {
+      throw new NoSuchElementException("The contact want to be removed does not exist");
+    }
+    fingerprints.remove(new EntryFingerprint(bookEntry));
+    unindex(bookEntry);
+    version++;
+    if (journal != null) {
+      journal.logRemove(id);
+    }
+    publish(ChangeEvent.Type.REMOVED, bookEntry);
+    return bookEntry;
+  }
+
+  /**
+   * Get a BookEntry by its id from the AddressBook.
+   * 
+   * @param id The id of the book entry.
+   * @return The book entry with that id.
+   */
+  @Override
+  public BookEntry getEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    BookEntry bookEntry = entries.get(id);
+    if (bookEntry == null) {
+      throw new NoSuchElementException("The contact with this id does not exist");
+    }
+    return bookEntry;
+  }
+
+  /**
+   * Replace the BookEntry with the given id by a new one, which takes over its id and its place in
+   * the AddressBook.
+   * 
+   * @param id The id of the book entry to be replaced.
+   * @param bookEntry The new book entry.
+   * @return The book entry replaced.
+   */
+  public BookEntry updateEntryById(int id, BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    BookEntry replaced = entries.get(id);
+    if (replaced == null) {
+      throw new NoSuchElementException("The contact want to be updated does not exist");
+    }
+    EntryFingerprint fingerprint = new EntryFingerprint(bookEntry);
+    if (!replaced.hasSameContent(bookEntry) && fingerprints.contains(fingerprint)) {
+      throw new IllegalArgumentException("An equal contact already exists");
+    }
+    fingerprints.remove(new EntryFingerprint(replaced));
+    fingerprints.add(fingerprint);
+    unindex(replaced);
+    bookEntry.setId(id);
+    entries.replace(bookEntry);
+    index(bookEntry);
+    version++;
+    if (journal != null) {
+      journal.logUpdate(bookEntry);
     }
-    throw new NoSuchElementException("The contact want to be removed does not exist");
+    publish(ChangeEvent.Type.UPDATED, bookEntry);
+    return replaced;
+  }
+
+  /**
+   * Getter for size.
+   * 
+   * @return The number of book entries in the AddressBook.
+   */
+  @Override
+  public int size() {
+    return entries.size();
   }
 
   /**
    * Clear the AddressBook
    */
+  @Override
   public void clear() {
-    entryList.clear();
+    entries.clear();
+    fingerprints.clear();
+    trigramIndex.clear();
+    fieldIndex.clear();
+    nameCompletions = null;
+    emailCompletions = null;
+    fuzzyIndex = null;
+    phoneticIndex = null;
+    foldedTrigramIndex = null;
     nextId = 0;
+    version++;
+    if (journal != null) {
+      journal.logClear();
+    }
+    publish(ChangeEvent.Type.CLEARED, null);
   }
 
   /**
-   * Search for book entries which match the query string.
+   * Search for book entries which match the query string. Queries of at least three characters
+   * are answered from the trigram index, shorter ones scan the whole book. With a query cache set,
+   * the results of a query asked again before the book changes come from the cache.
    * 
    * @param query string to be queried.
-   * @return List of book entries which matches the query.
+   * @return List of book entries which matches the query, in the order they were added.
    */
+  @Override
   public List<BookEntry> searchEntry(String query) {
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+
+    MetricsListener listener = metrics;
+    long start = listener == null ? 0 : System.nanoTime();
+    List<BookEntry> results = queryCache == null ? null : queryCache.get(query, version);
+    if (results != null) {
+      if (listener != null) {
+        listener.searched(MetricsListener.Operation.SEARCH_ENTRY, System.nanoTime() - start, 0,
+            results.size());
+      }
+      return results;
+    }
+
+    results = new ArrayList<>();
+    int scanned;
+    if (!TrigramIndex.canAnswer(query)) {
+      for (BookEntry bookEntry : entries) {
+        if (bookEntry.matches(query)) {
+          results.add(bookEntry);
+        }
+      }
+      scanned = entries.size();
+    } else {
+      // Ids are handed out in insertion order, so increasing ids keep the results in book order
+      int[] candidateIds = trigramIndex.candidates(query);
+      for (int id : candidateIds) {
+        BookEntry bookEntry = entries.get(id);
+        if (bookEntry.matches(query)) {
+          results.add(bookEntry);
+        }
+      }
+      scanned = candidateIds.length;
+    }
+    if (queryCache != null) {
+      queryCache.put(query, version, results);
+    }
+    if (listener != null) {
+      listener.searched(MetricsListener.Operation.SEARCH_ENTRY, System.nanoTime() - start,
+          scanned, results.size());
+    }
+    return results;
+  }
+
+  /**
+   * Complete a name prefix, for type-ahead. The prefix index behind it is built on the first call
+   * and then kept up to date by every change to the book.
+   * 
+   * @param prefix The beginning of the name typed so far.
+   * @param limit The maximum number of completions.
+   * @return The distinct names starting with the prefix, in lexicographic order.
+   */
+  public List<String> completeName(String prefix, int limit) {
+    checkCompletionArguments(prefix, limit);
+    if (nameCompletions == null) {
+      nameCompletions = new PrefixIndex();
+      for (BookEntry bookEntry : entries) {
+        nameCompletions.add(bookEntry.getName());
+      }
+    }
+    return nameCompletions.complete(prefix, limit);
+  }
+
+  /**
+   * Complete an email address prefix, for type-ahead. The prefix index behind it is built on the
+   * first call and then kept up to date by every change to the book.
+   * 
+   * @param prefix The beginning of the email address typed so far.
+   * @param limit The maximum number of completions.
+   * @return The distinct email addresses starting with the prefix, in lexicographic order.
+   */
+  public List<String> completeEmailAddress(String prefix, int limit) {
+    checkCompletionArguments(prefix, limit);
+    if (emailCompletions == null) {
+      emailCompletions = new PrefixIndex();
+      for (BookEntry bookEntry : entries) {
+        emailCompletions.add(bookEntry.getEmailAddress());
+      }
+    }
+    return emailCompletions.complete(prefix, limit);
+  }
+
+  /**
+   * Search for book entries whose name, a word of their name or email address is within an edit
+   * distance of the query, ignoring case, so that misspelled names are still found. The index
+   * behind it is built on the first call and then kept up to date by every change to the book.
+   * 
+   * @param query The name or email address, possibly misspelled.
+   * @param maxDistance The largest number of inserted, deleted or substituted characters allowed.
+   * @return List of book entries which match, the closest first and in the order they were added
+   *         among equally close ones.
+   */
+  public List<BookEntry> searchFuzzy(String query, int maxDistance) {
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+    if (maxDistance < 0) {
+      throw new IllegalArgumentException("Edit distance cannot be less than 0");
+    }
+    if (fuzzyIndex == null) {
+      fuzzyIndex = new FuzzyIndex();
+      for (BookEntry bookEntry : entries) {
+        fuzzyIndex.add(bookEntry);
+      }
+    }
+
+    Map<Integer, Integer> distances = fuzzyIndex.search(query, maxDistance);
+    List<Integer> ids = new ArrayList<>(distances.keySet());
+    ids.sort((a, b) -> {
+      int byDistance = Integer.compare(distances.get(a), distances.get(b));
+      return byDistance != 0 ? byDistance : Integer.compare(a, b);
+    });
+    List<BookEntry> results = new ArrayList<>(ids.size());
+    for (int id : ids) {
+      results.add(entries.get(id));
+    }
+    return results;
+  }
+
+  /**
+   * Search for book entries whose name sounds like the query, by the Soundex codes of the words of
+   * the name, ignoring case and accents: "Jon Smyth" finds "John Smith". Every word of the query
+   * must sound like a word of the name, and each word costs one hash lookup. The index behind it is
+   * built on the first call and then kept up to date by every change to the book.
+   * 
+   * @param query The name or some words of the name, as heard.
+   * @return List of book entries which match, in the order they were added.
+   */
+  public List<BookEntry> searchSoundsLike(String query) {
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+    if (phoneticIndex == null) {
+      phoneticIndex = new PhoneticIndex();
+      for (BookEntry bookEntry : entries) {
+        phoneticIndex.add(bookEntry);
+      }
+    }
+
+    int[] ids = phoneticIndex.search(query);
+    List<BookEntry> results = new ArrayList<>(ids.length);
+    for (int id : ids) {
+      results.add(entries.get(id));
+    }
+    return results;
+  }
+
+  /**
+   * Search for book entries which match a field-scoped query such as
+   * {@code email:@nyu.edu AND NOT name=Lei}; see Query for the syntax.
+   * 
+   * @param query The query string to be parsed.
+   * @return List of book entries which matches the query, in the order they were added.
+   * @throws IllegalArgumentException if the query string is not well formed.
+   */
+  public List<BookEntry> searchQuery(String query) {
+    return searchQuery(Query.parse(query));
+  }
+
+  /**
+   * Search for book entries which match a parsed query. The most selective indexed part of the
+   * query picks the candidates, which are then checked against the whole query; only queries
+   * with no indexed part scan the book.
+   * 
+   * @param query The parsed query.
+   * @return List of book entries which matches the query, in the order they were added.
+   */
+  public List<BookEntry> searchQuery(Query query) {
+    if (query == null) {
+      throw new NullPointerException("Query cannot be null");
+    }
+
+    MetricsListener listener = metrics;
+    long start = listener == null ? 0 : System.nanoTime();
     List<BookEntry> results = new ArrayList<>();
+    QueryPlanner planner = new QueryPlanner(trigramIndex, fieldIndex);
+    int scanned;
+    if (planner.estimate(query.root()) == QueryPlanner.UNINDEXED) {
+      for (BookEntry bookEntry : entries) {
+        if (query.matches(bookEntry)) {
+          results.add(bookEntry);
+        }
+      }
+      scanned = entries.size();
+    } else {
+      int[] candidateIds = planner.candidates(query.root());
+      for (int id : candidateIds) {
+        BookEntry bookEntry = entries.get(id);
+        if (query.matches(bookEntry)) {
+          results.add(bookEntry);
+        }
+      }
+      scanned = candidateIds.length;
+    }
+    if (listener != null) {
+      listener.searched(MetricsListener.Operation.SEARCH_QUERY, System.nanoTime() - start,
+          scanned, results.size());
+    }
+    return results;
+  }
 
+  /**
+   * Search for book entries which match the query string, optionally ignoring case and accents.
+   * Both the folded keys and their trigram index are built lazily: an entry folds an attribute
+   * the first time an insensitive search reaches it and keeps the folded copy, and the index is
+   * built on the first insensitive search and then kept up to date by every change to the book.
+   * A book which is never searched this way folds nothing, and a repeated search only folds the
+   * query.
+   * 
+   * @param query string to be queried.
+   * @param ignoreCaseAndAccents true to match "zoe" with "Zo&euml;", false to behave like
+   *        searchEntry(query).
+   * @return List of book entries which matches the query, in the order they were added.
+   */
+  public List<BookEntry> searchEntry(String query, boolean ignoreCaseAndAccents) {
+    if (!ignoreCaseAndAccents) {
+      return searchEntry(query);
+    }
     if (query == null) {
       throw new NullPointerException("Query string cannot be null");
     }
 
-    for (BookEntry bookEntry : entryList) {
-      if (bookEntry.matches(query)) {
-        results.add(bookEntry);
+    MetricsListener listener = metrics;
+    long start = listener == null ? 0 : System.nanoTime();
+    String foldedQuery = BookEntry.fold(query);
+    List<BookEntry> results = new ArrayList<>();
+    int scanned;
+    if (!TrigramIndex.canAnswer(foldedQuery)) {
+      for (BookEntry bookEntry : entries) {
+        if (bookEntry.matchesFolded(foldedQuery)) {
+          results.add(bookEntry);
+        }
+      }
+      scanned = entries.size();
+    } else {
+      if (foldedTrigramIndex == null) {
+        foldedTrigramIndex = new TrigramIndex();
+        for (BookEntry bookEntry : entries) {
+          indexFolded(bookEntry);
+        }
+      }
+      int[] candidateIds = foldedTrigramIndex.candidates(foldedQuery);
+      for (int id : candidateIds) {
+        BookEntry bookEntry = entries.get(id);
+        if (bookEntry.matchesFolded(foldedQuery)) {
+          results.add(bookEntry);
+        }
       }
+      scanned = candidateIds.length;
+    }
+    if (listener != null) {
+      listener.searched(MetricsListener.Operation.SEARCH_ENTRY, System.nanoTime() - start,
+          scanned, results.size());
+    }
+    return results;
+  }
+
+  /**
+   * Search for the first page of book entries which match the query string. The search stops as
+   * soon as the page is full; SearchPage.nextPage resumes it where it stopped.
+   * 
+   * @param query string to be queried.
+   * @param limit The maximum number of entries on a page.
+   * @return The first page of book entries which match the query, in the order they were added.
+   */
+  public SearchPage searchPage(String query, int limit) {
+    return searchPage(query, -1, 0, limit);
+  }
+
+  /**
+   * Search for a page of book entries which match the query string and come after an id.
+   * 
+   * @param query string to be queried.
+   * @param afterId Only entries with a greater id are searched.
+   * @param offset The number of results on the pages before this one.
+   * @param limit The maximum number of entries on a page.
+   * @return The page of book entries which match the query.
+   */
+  SearchPage searchPage(String query, int afterId, int offset, int limit) {
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Page limit must be greater than 0");
+    }
+
+    // Look for one result past the limit to tell whether there is a next page
+    List<BookEntry> results = new ArrayList<>(Math.min(limit, 64) + 1);
+    if (!TrigramIndex.canAnswer(query)) {
+      for (int position = entries.firstPositionAfter(afterId);
+          position < entries.limit() && results.size() <= limit; position++) {
+        BookEntry bookEntry = entries.at(position);
+        if (bookEntry != null && bookEntry.matches(query)) {
+          results.add(bookEntry);
+        }
+      }
+    } else {
+      // Walk the intersection from afterId on rather than building every candidate of the query
+      TrigramIndex.Intersection candidates = trigramIndex.intersect(query);
+      int id = afterId;
+      while (results.size() <= limit
+          && (id = candidates.next(id)) != TrigramIndex.Intersection.NO_ID) {
+        BookEntry bookEntry = entries.get(id);
+        if (bookEntry.matches(query)) {
+          results.add(bookEntry);
+        }
+      }
+    }
+
+    boolean hasNextPage = results.size() > limit;
+    if (hasNextPage) {
+      results.remove(limit);
+    }
+    return new SearchPage(this, query, offset, limit, results, hasNextPage);
+  }
+
+  /**
+   * Search for book entries which match the query string, splitting the entries to be checked
+   * across the common fork/join pool.
+   * 
+   * @param query string to be queried.
+   * @return List of book entries which matches the query, in the order they were added.
+   */
+  public List<BookEntry> searchEntryParallel(String query) {
+    return searchEntryParallel(query, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Search for book entries which match the query string, splitting the entries to be checked
+   * across a fork/join pool. The results are the same, in the same order, as those of
+   * searchEntry; when there are fewer than PARALLEL_THRESHOLD entries to check the search runs on
+   * the calling thread. The book must not be modified while the search runs.
+   * 
+   * @param query string to be queried.
+   * @param pool The pool to run the search in.
+   * @return List of book entries which matches the query, in the order they were added.
+   */
+  public List<BookEntry> searchEntryParallel(String query, ForkJoinPool pool) {
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+    if (pool == null) {
+      throw new NullPointerException("Pool cannot be null");
+    }
+
+    MetricsListener listener = metrics;
+    long start = listener == null ? 0 : System.nanoTime();
+    int[] candidateIds = TrigramIndex.canAnswer(query) ? trigramIndex.candidates(query) : null;
+    int count = candidateIds == null ? entries.limit() : candidateIds.length;
+    ParallelScan scan = new ParallelScan(entries, candidateIds, query, 0, count);
+    List<BookEntry> results = count < PARALLEL_THRESHOLD ? scan.scan() : pool.invoke(scan);
+    if (listener != null) {
+      listener.searched(MetricsListener.Operation.SEARCH_ENTRY_PARALLEL,
+          System.nanoTime() - start, candidateIds == null ? entries.size() : count,
+          results.size());
     }
     return results;
   }
@@ -119,40 +709,448 @@ public class AddressBook {
    * @param path the output path.
    * @throws FileNotFoundException if file cannot be found.
    */
+  @Override
   public void saveToFile(String path) throws FileNotFoundException {
-    Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    try (Writer writer = new FileWriter(path)) {
-      gson.toJson(entryList, writer);
-    } catch (IOException e) {
-      e.printStackTrace();
+    saveToFile(path, true);
+  }
+
+  /**
+   * Save the AddressBook to a JSON file, streaming one entry at a time.
+   * 
+   * @param path the output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void saveToFile(String path, boolean prettyPrinting) throws FileNotFoundException {
+    save(path, prettyPrinting, false, 0);
+  }
+
+  /**
+   * Save the AddressBook to a GZIP-compressed JSON file, streaming one entry at a time through the
+   * compressor. readFromFile recognizes compressed files by their header.
+   * 
+   * @param path the output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @param compressionLevel the level from 0 (no compression) to 9 (best compression), or -1 for
+   *        the default level of Deflater.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  public void saveToFile(String path, boolean prettyPrinting, int compressionLevel)
+      throws FileNotFoundException {
+    if (compressionLevel < Deflater.DEFAULT_COMPRESSION
+        || compressionLevel > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Compression level must be between -1 and 9");
     }
+    save(path, prettyPrinting, true, compressionLevel);
   }
 
   /**
-   * Read the AddressBook from a JSON file.
+   * Save the AddressBook to a JSON file in the background, on the common fork/join pool.
+   * 
+   * @param path the output path.
+   * @return A future completed once the file is in place; see saveAsync(String, Executor).
+   */
+  public CompletableFuture<Void> saveAsync(String path) {
+    return saveAsync(path, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Save the AddressBook to a JSON file in the background. The entries and their ids are captured
+   * on the calling thread, which only copies references, and written by the executor while the
+   * book goes on changing; the file holds the book as it was when saveAsync was called.
+   * 
+   * <p>
+   * The file is written under a temporary name in the same directory, forced to the storage device
+   * and renamed over the path atomically, so the path holds either the previous file or the whole
+   * new one, even after a crash.
+   * 
+   * @param path the output path.
+   * @param executor the executor to write the file in.
+   * @return A future completed once the file is in place, or completed exceptionally with the
+   *         IOException which stopped the save, or with the RejectedExecutionException if the
+   *         executor did not take it.
+   */
+  public CompletableFuture<Void> saveAsync(String path, Executor executor) {
+    if (path == null) {
+      throw new NullPointerException("Path cannot be null");
+    }
+    if (executor == null) {
+      throw new NullPointerException("Executor cannot be null");
+    }
+    // an entry removed and added again gets a new id, so the ids are captured too
+    BookEntry[] captured = new BookEntry[entries.size()];
+    int[] capturedIds = new int[captured.length];
+    int count = 0;
+    for (BookEntry bookEntry : entries) {
+      captured[count] = bookEntry;
+      capturedIds[count++] = bookEntry.getId();
+    }
+
+    MetricsListener listener = metrics;
+    CompletableFuture<Void> saved = new CompletableFuture<>();
+    Runnable save = () -> {
+      long start = listener == null ? 0 : System.nanoTime();
+      Path target = Paths.get(path).toAbsolutePath();
+      Path temporary = null;
+      try {
+        temporary = createTemporaryFor(target);
+        long bytes = EntryJson.writeFile(temporary.toString(), true, captured, capturedIds);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        if (listener != null) {
+          listener.transferred(MetricsListener.Operation.SAVE_TO_FILE,
+              System.nanoTime() - start, bytes, captured.length);
+        }
+        saved.complete(null);
+      } catch (IOException | RuntimeException e) {
+        if (temporary != null) {
+          try {
+            Files.deleteIfExists(temporary);
+          } catch (IOException suppressed) {
+            e.addSuppressed(suppressed);
+          }
+        }
+        saved.completeExceptionally(e);
+      }
+    };
+    try {
+      executor.execute(save);
+    } catch (RejectedExecutionException e) {
+      saved.completeExceptionally(e);
+    }
+    return saved;
+  }
+
+  /**
+   * Create an empty file with a unique name next to the target, with the permissions the target
+   * has, or the default ones for a new file if it does not exist yet, so that the file renamed over
+   * the target can be read by whoever could read the target, as when saveToFile overwrites it.
+   */
+  private static Path createTemporaryFor(Path target) throws IOException {
+    Path temporary;
+    while (true) {
+      temporary = target.resolveSibling(target.getFileName() + "."
+          + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+      try {
+        Files.newByteChannel(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+            .close();
+        break;
+      } catch (FileAlreadyExistsException e) {
+        continue;
+      }
+    }
+    PosixFileAttributeView view =
+        Files.getFileAttributeView(target, PosixFileAttributeView.class);
+    if (view != null) {
+      try {
+        Files.setPosixFilePermissions(temporary, view.readAttributes().permissions());
+      } catch (NoSuchFileException e) {
+        // a new file keeps the default permissions
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(temporary);
+        throw e;
+      }
+    }
+    return temporary;
+  }
+
+  /**
+   * Read the AddressBook from a JSON file, plain or GZIP-compressed, streaming one entry at a time.
+   * Entries read get new ids, as if they were added one by one, once the whole file is read: a
+   * file which is malformed or cut short adds nothing and throws JsonSyntaxException.
    * 
    * @param path the input path.
    * @throws FileNotFoundException if file cannot be found.
    */
+  @Override
   public void readFromFile(String path) throws FileNotFoundException {
-    Gson gson = new GsonBuilder().create();
-    try (Reader reader = new FileReader(path)) {
-      Type targetType = new TypeToken<List<BookEntry>>() {}.getType();
-      List<BookEntry> entryListRead = gson.fromJson(reader, targetType);
-
-      for (BookEntry bookEntryRead : entryListRead) {
-        // create a clone of the bookEntryRead but do not preserve id
-        BookEntry bookEntry = new BookEntry.Builder(bookEntryRead.getName())
-            .phoneNumber(bookEntryRead.getPhoneNumber())
-            .emailAddress(bookEntryRead.getEmailAddress())
-            .postalAddress(bookEntryRead.getPostalAddress()).note(bookEntryRead.getNote()).build();
-        addEntry(bookEntry);
+    MetricsListener listener = metrics;
+    long start = listener == null ? 0 : System.nanoTime();
+    // Added only after the end of the array, so the journal and the change listeners never see a
+    // part of a file
+    List<BookEntry> read = new ArrayList<>();
+    long bytes;
+    try {
+      bytes = EntryJson.readFile(path, read::add);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+    for (BookEntry bookEntry : read) {
+      // do not preserve the ids read
+      addEntry(bookEntry);
+    }
+    if (listener != null) {
+      listener.transferred(MetricsListener.Operation.READ_FROM_FILE, System.nanoTime() - start,
+          bytes, read.size());
+    }
+  }
+
+  /**
+   * Report the latency and the work done by searches, saves and reads from now on, or stop
+   * reporting them. Without a listener, an operation only pays for one field read.
+   * 
+   * @param listener The listener to report to, or null to stop reporting.
+   */
+  public void setMetricsListener(MetricsListener listener) {
+    this.metrics = listener;
+  }
+
+  /**
+   * Publish every change of the AddressBook from now on to a listener. Listeners may be added and
+   * removed from within a listener, taking effect from the next change on.
+   * 
+   * @param listener The listener to be added.
+   */
+  public void addChangeListener(ChangeListener listener) {
+    if (listener == null) {
+      throw new NullPointerException("Listener cannot be null");
+    }
+    changeListeners.add(listener);
+  }
+
+  /**
+   * Stop publishing the changes of the AddressBook to a listener.
+   * 
+   * @param listener The listener to be removed.
+   * @return true if the listener was added before.
+   */
+  public boolean removeChangeListener(ChangeListener listener) {
+    return changeListeners.remove(listener);
+  }
+
+  /**
+   * Getter for changeSequence.
+   * 
+   * @return The sequence number of the last change of the AddressBook, 0 before the first one.
+   */
+  public long getChangeSequence() {
+    return changeSequence;
+  }
+
+  /**
+   * Cache the results of searchEntry from now on, or stop caching them. Every change to the book
+   * invalidates the cached results, and a cache must not be shared with another book.
+   * 
+   * @param cache The cache to use, or null to stop caching.
+   */
+  public void setQueryCache(QueryCache cache) {
+    if (cache != null) {
+      cache.invalidate();
+    }
+    this.queryCache = cache;
+  }
+
+  /**
+   * Save the AddressBook to a binary snapshot file, which openSnapshot maps back into memory. The
+   * ids of the entries are kept.
+   *
+   * @param path the output path.
+   * @throws IOException if the file cannot be written.
+   */
+  public void saveSnapshot(String path) throws IOException {
+    BinarySnapshot.write(path, entries, entries.size(), nextId);
+  }
+
+  /**
+   * Open a binary snapshot file written by saveSnapshot. The file is mapped into memory and only
+   * its header is read, so this takes the same time for any size of book.
+   *
+   * @param path the input path.
+   * @return A read-only view of the book in the snapshot.
+   * @throws IOException if the file cannot be mapped or is not a snapshot.
+   */
+  public static MappedAddressBook openSnapshot(String path) throws IOException {
+    return new MappedAddressBook(BinarySnapshot.open(path));
+  }
+
+  /**
+   * Export the AddressBook, streaming one entry at a time, so that the memory used does not depend
+   * on the size of the book. The destination is neither flushed nor closed.
+   *
+   * @param out the destination, e.g. a Writer or a StringBuilder.
+   * @param format the format to write.
+   * @throws IOException if the destination fails.
+   */
+  public void export(Appendable out, ExportFormat format) throws IOException {
+    if (out == null || format == null) {
+      throw new NullPointerException("Destination and format cannot be null");
+    }
+    EntryExporter.export(entries, format, out);
+  }
+
+  /**
+   * Export the AddressBook in UTF-8 to a channel, streaming one entry at a time. The output is
+   * flushed to the channel, which is left open.
+   *
+   * @param channel the destination, e.g. a FileChannel or a socket.
+   * @param format the format to write.
+   * @throws IOException if the channel fails.
+   */
+  public void export(WritableByteChannel channel, ExportFormat format) throws IOException {
+    if (channel == null || format == null) {
+      throw new NullPointerException("Destination and format cannot be null");
+    }
+    Writer writer = new BufferedWriter(
+        Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), IO_BUFFER_SIZE),
+        IO_BUFFER_SIZE);
+    EntryExporter.export(entries, format, writer);
+    writer.flush();
+  }
+
+  /**
+   * Replace the content of the AddressBook by entries whose ids are already set, as recovered from
+   * a previous state of the book. Nothing is journaled or published.
+   * 
+   * @param restored The entries in book order.
+   * @param restoredNextId The id the book will hand out next.
+   */
+  void restore(Collection<BookEntry> restored, int restoredNextId) {
+    entries.clear();
+    fingerprints.clear();
+    trigramIndex.clear();
+    fieldIndex.clear();
+    nameCompletions = null;
+    emailCompletions = null;
+    fuzzyIndex = null;
+    phoneticIndex = null;
+    foldedTrigramIndex = null;
+    for (BookEntry bookEntry : restored) {
+      fingerprints.add(new EntryFingerprint(bookEntry));
+      entries.add(bookEntry);
+      index(bookEntry);
+    }
+    nextId = restoredNextId;
+    version++;
+  }
+
+  /**
+   * Getter for entries.
+   * 
+   * @return The entries of the AddressBook in book order, which must not be modified while they
+   *         are iterated.
+   */
+  Iterable<BookEntry> entries() {
+    return entries;
+  }
+
+  /**
+   * Journal every mutation of the AddressBook from now on.
+   * 
+   * @param journal The journal to append to.
+   */
+  void attachJournal(AddressBookJournal journal) {
+    this.journal = journal;
+    // so that changes and journal records share their sequence numbers
+    this.changeSequence = journal.sequence();
+  }
+
+  private static void checkCompletionArguments(String prefix, int limit) {
+    if (prefix == null) {
+      throw new NullPointerException("Prefix cannot be null");
+    }
+    if (limit < 0) {
+      throw new IllegalArgumentException("Completion limit cannot be less than 0");
+    }
+  }
+
+  private boolean contains(BookEntry bookEntry) {
+    BookEntry stored = entries.get(bookEntry.getId());
+    return stored != null && bookEntry.equals(stored);
+  }
+
+  private void save(String path, boolean prettyPrinting, boolean compressed,
+      int compressionLevel) {
+    MetricsListener listener = metrics;
+    long start = listener == null ? 0 : System.nanoTime();
+    try {
+      long bytes = compressed
+          ? EntryJson.writeCompressedFile(path, prettyPrinting, compressionLevel, entries)
+          : EntryJson.writeFile(path, prettyPrinting, entries);
+      if (listener != null) {
+        listener.transferred(MetricsListener.Operation.SAVE_TO_FILE, System.nanoTime() - start,
+            bytes, entries.size());
       }
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
+  private void append(BookEntry bookEntry, int id) {
+    bookEntry.setId(id);
+    nextId = id + 1;
+    entries.add(bookEntry);
+    index(bookEntry);
+    version++;
+    if (journal != null) {
+      journal.logAdd(bookEntry, nextId);
+    }
+    publish(ChangeEvent.Type.ADDED, bookEntry);
+  }
+
+  private void publish(ChangeEvent.Type type, BookEntry bookEntry) {
+    changeSequence++;
+    if (!changeListeners.isEmpty()) {
+      ChangeEvent event = new ChangeEvent(changeSequence, type, bookEntry);
+      for (ChangeListener listener : changeListeners) {
+        listener.changed(event);
+      }
+    }
+  }
+
+  private void index(BookEntry bookEntry) {
+    for (EntryField field : EntryField.FIELDS) {
+      trigramIndex.add(bookEntry.getId(), field.valueOf(bookEntry));
+    }
+    fieldIndex.add(bookEntry);
+    if (nameCompletions != null) {
+      nameCompletions.add(bookEntry.getName());
+    }
+    if (emailCompletions != null) {
+      emailCompletions.add(bookEntry.getEmailAddress());
+    }
+    if (fuzzyIndex != null) {
+      fuzzyIndex.add(bookEntry);
+    }
+    if (phoneticIndex != null) {
+      phoneticIndex.add(bookEntry);
+    }
+    if (foldedTrigramIndex != null) {
+      indexFolded(bookEntry);
+    }
+  }
+
+  private void indexFolded(BookEntry bookEntry) {
+    for (EntryField field : EntryField.FIELDS) {
+      foldedTrigramIndex.add(bookEntry.getId(), bookEntry.foldedValueOf(field));
+    }
+  }
+
+  private void unindex(BookEntry bookEntry) {
+    for (EntryField field : EntryField.FIELDS) {
+      trigramIndex.remove(bookEntry.getId(), field.valueOf(bookEntry));
+    }
+    fieldIndex.remove(bookEntry);
+    if (nameCompletions != null) {
+      nameCompletions.remove(bookEntry.getName());
+    }
+    if (emailCompletions != null) {
+      emailCompletions.remove(bookEntry.getEmailAddress());
+    }
+    if (fuzzyIndex != null) {
+      fuzzyIndex.remove(bookEntry);
+    }
+    if (phoneticIndex != null) {
+      phoneticIndex.remove(bookEntry);
+    }
+    if (foldedTrigramIndex != null) {
+      for (EntryField field : EntryField.FIELDS) {
+        foldedTrigramIndex.remove(bookEntry.getId(), bookEntry.foldedValueOf(field));
+      }
+    }
+  }
+
   /**
    * Override toString() for the AddressBook.
    * 
@@ -160,10 +1158,10 @@ public class AddressBook {
    */
   @Override
   public String toString() {
-    String result = "";
-    for (BookEntry bookEntry : entryList) {
-      result += bookEntry.toString() + "\n";
+    StringBuilder result = new StringBuilder();
+    for (BookEntry bookEntry : entries) {
+      result.append(bookEntry).append('\n');
     }
-    return result;
+    return result.toString();
   }
 }
@@ -0,0 +1,415 @@
+package addressbook;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A read-only replica of an AddressBook kept up to date from the directory of its
+ * AddressBookJournal, which another process writes. Opening the follower loads the book like
+ * opening the journal does; from then on the follower tails the log and applies each new record,
+ * so catching up costs as much as the changes made since the last time, not as much as the book.
+ *
+ * <p>
+ * The follower holds the log open, so when the journal rotates it for a compaction, the follower
+ * finishes reading the rotated log before it moves on to the new one. Should it still miss records,
+ * because it was closed or lagged behind a whole compaction, the gap in the sequence numbers makes
+ * it reload the book from the snapshot and the logs.
+ *
+ * <p>
+ * Searches may run on any thread, also while the follower catches up.
+ *
+ * @author Lei Guo
+ */
+public class AddressBookFollower implements Closeable {
+  private static final int IO_BUFFER_SIZE = 1 << 16;
+  // Reads racing a compaction in the writer may find a rotated log gone, and are retried
+  private static final int RELOAD_ATTEMPTS = 5;
+
+  private final Path directory;
+  private final Path logPath;
+  private final long pollIntervalMillis;
+
+  private final ReadWriteLock bookLock = new ReentrantReadWriteLock();
+  // guarded by bookLock
+  private AddressBook addressBook;
+  private volatile long sequence;
+
+  // Tail state, guarded by this
+  private ScheduledExecutorService scheduler;
+  private FileChannel log;
+  private Object logKey;
+  private long position;
+  private boolean opened;
+  private boolean closed;
+
+  /**
+   * The Builder class for AddressBookFollower using the BuilderPattern.
+   */
+  public static class Builder {
+    // Required parameters
+    private final String directory;
+
+    // Optional parameters
+    private long pollIntervalMillis = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * Constructor for Builder.
+     *
+     * @param directory The directory of the journal to follow.
+     */
+    public Builder(String directory) {
+      if (directory == null) {
+        throw new NullPointerException("Journal directory cannot be null");
+      }
+      this.directory = directory;
+    }
+
+    /**
+     * Set how often the follower catches up in the background; the default is every second. 0
+     * turns background catch-up off, leaving it to catchUp.
+     *
+     * @param interval The time between catch-ups.
+     * @param unit The unit of the interval.
+     * @return The Builder after the poll interval is set.
+     */
+    public Builder pollInterval(long interval, TimeUnit unit) {
+      if (interval < 0) {
+        throw new IllegalArgumentException("Poll interval cannot be less than 0");
+      }
+      this.pollIntervalMillis = unit.toMillis(interval);
+      return this;
+    }
+
+    /**
+     * This method create a new AddressBookFollower.
+     *
+     * @return The new AddressBookFollower based on the Builder.
+     */
+    public AddressBookFollower build() {
+      return new AddressBookFollower(this);
+    }
+  }
+
+  private AddressBookFollower(Builder builder) {
+    directory = Paths.get(builder.directory);
+    logPath = AddressBookJournal.logOf(directory);
+    pollIntervalMillis = builder.pollIntervalMillis;
+    addressBook = new AddressBook();
+  }
+
+  /**
+   * Load the book from the journal directory and start following it. A follower can be opened only
+   * once.
+   *
+   * @throws IOException if the journal cannot be read.
+   */
+  public synchronized void open() throws IOException {
+    if (opened || closed) {
+      throw new IllegalStateException("Follower has already been opened");
+    }
+    opened = true;
+    reload();
+    if (pollIntervalMillis > 0) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "address-book-follower");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.scheduleWithFixedDelay(this::catchUpInBackground, pollIntervalMillis,
+          pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Apply the records appended to the journal since the last catch-up, or reload the book if some
+   * of them can no longer be read.
+   *
+   * @return The sequence number of the last record applied.
+   * @throws IOException if the journal cannot be read.
+   */
+  public synchronized long catchUp() throws IOException {
+    if (!opened || closed) {
+      throw new IllegalStateException("Follower is not open");
+    }
+    if (!tail()) {
+      reload();
+    }
+    return sequence;
+  }
+
+  /**
+   * Getter for sequence.
+   *
+   * @return The sequence number of the last journal record applied to the book.
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Get a BookEntry by its id.
+   *
+   * @param id The id of the book entry.
+   * @return The book entry with that id.
+   */
+  public BookEntry getEntryById(int id) {
+    Lock lock = bookLock.readLock();
+    lock.lock();
+    try {
+      return addressBook.getEntryById(id);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of book entries as of the last catch-up.
+   */
+  public int size() {
+    Lock lock = bookLock.readLock();
+    lock.lock();
+    try {
+      return addressBook.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Search for book entries which match the query string, as of the last catch-up.
+   *
+   * @param query string to be queried.
+   * @return List of book entries which matches the query, in the order they were added.
+   */
+  public List<BookEntry> searchEntry(String query) {
+    Lock lock = bookLock.readLock();
+    lock.lock();
+    try {
+      return addressBook.searchEntry(query);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stop following the journal.
+   *
+   * @throws IOException if the log cannot be closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+    closeLog();
+  }
+
+  /**
+   * Override toString() for the AddressBookFollower.
+   *
+   * @return the good-looking String format of the book as of the last catch-up.
+   */
+  @Override
+  public String toString() {
+    Lock lock = bookLock.readLock();
+    lock.lock();
+    try {
+      return addressBook.toString();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Catch up as the background poller does, reporting failures instead of throwing them. A run
+   * which was already due when the follower was closed does nothing.
+   */
+  synchronized void catchUpInBackground() {
+    if (closed) {
+      return;
+    }
+    try {
+      catchUp();
+    } catch (IOException | RuntimeException e) {
+      // the next catch-up starts over from the same place
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Load the whole book again from the snapshot and the logs.
+   */
+  private void reload() throws IOException {
+    for (int attempt = 1;; attempt++) {
+      try {
+        closeLog();
+        // Open the log before reading the journal, so that records appended meanwhile are tailed
+        openLog();
+        AddressBookJournal.Fold fold = AddressBookJournal.read(directory);
+        AddressBook loaded = new AddressBook();
+        loaded.restore(fold.entries(), fold.nextId());
+        Lock lock = bookLock.writeLock();
+        lock.lock();
+        try {
+          addressBook = loaded;
+          sequence = fold.sequence();
+        } finally {
+          lock.unlock();
+        }
+        // The log opened is at most as recent as the one read, so its records are skipped up to
+        // the sequence read, and the ones after follow on without a gap
+        if (tail()) {
+          return;
+        }
+      } catch (NoSuchFileException e) {
+        if (attempt == RELOAD_ATTEMPTS) {
+          throw e;
+        }
+        continue;
+      }
+      if (attempt == RELOAD_ATTEMPTS) {
+        throw new IOException("Cannot follow the journal in " + directory);
+      }
+    }
+  }
+
+  /**
+   * Apply the records of the log held, then of the logs it was rotated into.
+   *
+   * @return false if records are missing and the book has to be reloaded.
+   */
+  private boolean tail() throws IOException {
+    while (true) {
+      if (log == null) {
+        openLog();
+        if (log == null) {
+          // the journal was never opened, or is being rotated
+          return true;
+        }
+      }
+      // Check for a rotation first: the journal syncs the log before renaming it, so once it was
+      // renamed, reading to its end gets every record it will ever hold
+      boolean rotated = logKey == null || !logKey.equals(keyOf(logPath));
+      if (!applyNewRecords()) {
+        return false;
+      }
+      if (!rotated) {
+        return true;
+      }
+      closeLog();
+      if (logKey == null) {
+        // Without file keys a rotation cannot be told apart, so the log is read again in full;
+        // the records already applied are skipped by sequence number
+        openLog();
+        return log == null || applyNewRecords();
+      }
+    }
+  }
+
+  /**
+   * Apply the complete records between the position and the end of the log held.
+   *
+   * @return false if a record does not follow the last one applied.
+   */
+  private boolean applyNewRecords() throws IOException {
+    log.position(position);
+    InputStream in = new BufferedInputStream(Channels.newInputStream(log), IO_BUFFER_SIZE);
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) >= 0) {
+      if (b != '\n') {
+        line.write(b);
+        continue;
+      }
+      AddressBookJournal.Record record;
+      try {
+        record = AddressBookJournal.parse(new String(line.toByteArray(), StandardCharsets.UTF_8));
+      } catch (IOException | RuntimeException e) {
+        return false;
+      }
+      if (record.sequence() > sequence) {
+        if (record.sequence() != sequence + 1) {
+          return false;
+        }
+        Lock lock = bookLock.writeLock();
+        lock.lock();
+        try {
+          record.applyTo(addressBook);
+          sequence = record.sequence();
+        } catch (IOException e) {
+          return false;
+        } finally {
+          lock.unlock();
+        }
+      }
+      position += line.size() + 1;
+      line.reset();
+    }
+    // A last line without its newline is still being written, and is read again next time
+    return true;
+  }
+
+  private void openLog() throws IOException {
+    while (true) {
+      Object key = keyOf(logPath);
+      try {
+        log = FileChannel.open(logPath, StandardOpenOption.READ);
+      } catch (NoSuchFileException e) {
+        log = null;
+        return;
+      }
+      position = 0;
+      if (key == null || key.equals(keyOf(logPath))) {
+        logKey = key;
+        return;
+      }
+      // rotated while being opened
+      closeLog();
+    }
+  }
+
+  private void closeLog() throws IOException {
+    if (log != null) {
+      log.close();
+      log = null;
+    }
+  }
+
+  /**
+   * Identify the file a path resolves to, so that a renamed log can be told from its successor.
+   *
+   * @return The file key, or null if the file does not exist or file keys are not supported.
+   */
+  private static Object keyOf(Path path) throws IOException {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,714 @@
+package addressbook;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A journaled persistence mode for an AddressBook. Every mutation of the book appends one compact
+ * JSON record to a log file, so the cost of making a change durable depends on the change and not
+ * on the size of the book. A background compactor periodically folds the log into a snapshot, and
+ * opening the journal recovers the book from the snapshot plus whatever the log holds after it.
+ *
+ * <p>
+ * The directory holds {@code snapshot.json}, the active log {@code journal.log} and, while a
+ * compaction is running or after it failed, rotated logs named {@code journal.log.<sequence>}.
+ * Records carry increasing sequence numbers, and records already covered by the snapshot are
+ * skipped on replay, so a crash at any point of a compaction loses nothing.
+ *
+ * @author Lei Guo
+ */
+public class AddressBookJournal implements Closeable {
+  private static final String SNAPSHOT_FILE = "snapshot.json";
+  private static final String LOG_FILE = "journal.log";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final int IO_BUFFER_SIZE = 1 << 16;
+
+  private static final String SEQUENCE = "seq";
+  private static final String OPERATION = "op";
+  private static final String ENTRY = "entry";
+  private static final String ID = "id";
+  private static final String NEXT_ID = "nextId";
+  private static final String ENTRIES = "entries";
+
+  private static final String ADD = "add";
+  private static final String UPDATE = "update";
+  private static final String REMOVE = "remove";
+  private static final String CLEAR = "clear";
+
+  private final Path directory;
+  private final int syncEveryRecords;
+  private final long syncIntervalMillis;
+  private final long compactIntervalMillis;
+
+  private final Object compactLock = new Object();
+  private ScheduledExecutorService scheduler;
+  private FileChannel logChannel;
+  private BufferedWriter logWriter;
+  private long sequence;
+  private int unsyncedRecords;
+  private long recordsSinceCompaction;
+  private boolean closed;
+
+  /**
+   * The Builder class for AddressBookJournal using the BuilderPattern.
+   */
+  public static class Builder {
+    // Required parameters
+    private final String directory;
+
+    // Optional parameters
+    private int syncEveryRecords = 1;
+    private long syncIntervalMillis = 0;
+    private long compactIntervalMillis = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Constructor for Builder.
+     *
+     * @param directory The directory holding the snapshot and the log.
+     */
+    public Builder(String directory) {
+      if (directory == null) {
+        throw new NullPointerException("Journal directory cannot be null");
+      }
+      this.directory = directory;
+    }
+
+    /**
+     * Set how many records may be appended before the log is forced to disk. 1, the default, syncs
+     * every record; 0 never syncs on count and leaves it to the sync interval or the OS.
+     *
+     * @param records The number of records per sync.
+     * @return The Builder after the sync batch is set.
+     */
+    public Builder syncEveryRecords(int records) {
+      if (records < 0) {
+        throw new IllegalArgumentException("Records per sync cannot be less than 0");
+      }
+      this.syncEveryRecords = records;
+      return this;
+    }
+
+    /**
+     * Set how often pending records are forced to disk in the background. 0, the default, turns
+     * the background sync off.
+     *
+     * @param interval The time between syncs.
+     * @param unit The unit of the interval.
+     * @return The Builder after the sync interval is set.
+     */
+    public Builder syncInterval(long interval, TimeUnit unit) {
+      if (interval < 0) {
+        throw new IllegalArgumentException("Sync interval cannot be less than 0");
+      }
+      this.syncIntervalMillis = unit.toMillis(interval);
+      return this;
+    }
+
+    /**
+     * Set how often the log is folded into the snapshot in the background. 0 turns background
+     * compaction off; the default is every ten minutes.
+     *
+     * @param interval The time between compactions.
+     * @param unit The unit of the interval.
+     * @return The Builder after the compaction interval is set.
+     */
+    public Builder compactInterval(long interval, TimeUnit unit) {
+      if (interval < 0) {
+        throw new IllegalArgumentException("Compaction interval cannot be less than 0");
+      }
+      this.compactIntervalMillis = unit.toMillis(interval);
+      return this;
+    }
+
+    /**
+     * This method create a new AddressBookJournal.
+     *
+     * @return The new AddressBookJournal based on the Builder.
+     */
+    public AddressBookJournal build() {
+      return new AddressBookJournal(this);
+    }
+  }
+
+  private AddressBookJournal(Builder builder) {
+    directory = Paths.get(builder.directory);
+    syncEveryRecords = builder.syncEveryRecords;
+    syncIntervalMillis = builder.syncIntervalMillis;
+    compactIntervalMillis = builder.compactIntervalMillis;
+  }
+
+  /**
+   * Recover the AddressBook from the snapshot and the log, and journal its mutations from now on.
+   * A journal can be opened only once.
+   *
+   * @return The recovered AddressBook.
+   * @throws IOException if the journal cannot be read or the log cannot be opened.
+   */
+  public synchronized AddressBook open() throws IOException {
+    if (logWriter != null || closed) {
+      throw new IllegalStateException("Journal has already been opened");
+    }
+    Files.createDirectories(directory);
+
+    Fold fold = readSnapshot(directory);
+    for (Path segment : rotatedSegments(directory)) {
+      replay(segment, fold, false);
+    }
+    Path log = directory.resolve(LOG_FILE);
+    long validLength = Files.exists(log) ? replay(log, fold, true) : 0;
+
+    AddressBook addressBook = new AddressBook();
+    addressBook.restore(fold.entries.values(), fold.nextId);
+    sequence = fold.sequence;
+
+    logChannel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    // Drop a record torn by a crash, and terminate a last record whose newline never made it
+    if (logChannel.size() > validLength) {
+      logChannel.truncate(validLength);
+    }
+    logChannel.position(logChannel.size());
+    logWriter = newWriter(logChannel);
+    if (logChannel.size() < validLength) {
+      logWriter.write('\n');
+      sync();
+    }
+    recordsSinceCompaction = fold.replayed;
+
+    startBackgroundTasks();
+    addressBook.attachJournal(this);
+    return addressBook;
+  }
+
+  /**
+   * Fold the log into a new snapshot now. Mutations keep being journaled while the snapshot is
+   * written.
+   *
+   * @throws IOException if the snapshot cannot be written.
+   */
+  public void compact() throws IOException {
+    synchronized (compactLock) {
+      synchronized (this) {
+        checkOpen();
+        if (recordsSinceCompaction == 0) {
+          return;
+        }
+        // Rotate under the lock; the folding below only touches files nobody appends to
+        sync();
+        logWriter.close();
+        Files.move(directory.resolve(LOG_FILE), directory.resolve(LOG_FILE + "." + sequence));
+        logChannel = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE);
+        logWriter = newWriter(logChannel);
+        recordsSinceCompaction = 0;
+      }
+
+      Fold fold = readSnapshot(directory);
+      List<Path> segments = rotatedSegments(directory);
+      for (Path segment : segments) {
+        replay(segment, fold, false);
+      }
+      writeSnapshot(fold);
+      for (Path segment : segments) {
+        Files.delete(segment);
+      }
+    }
+  }
+
+  /**
+   * Force every record appended so far to disk, compact the log and stop the background tasks.
+   *
+   * @throws IOException if the log cannot be synced or compacted.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (logWriter == null || closed) {
+        closed = true;
+        return;
+      }
+    }
+    scheduler.shutdown();
+    try {
+      compact();
+    } finally {
+      synchronized (this) {
+        sync();
+        logWriter.close();
+        closed = true;
+      }
+    }
+  }
+
+  /**
+   * Read the state of the book in a journal directory as of the last complete record, without
+   * opening the journal, as a follower of the journal does.
+   *
+   * @param directory The directory holding the snapshot and the log.
+   * @return The state of the book.
+   * @throws IOException if the journal cannot be read, for instance because a compaction running
+   *         in another process deleted a rotated log in the meantime.
+   */
+  static Fold read(Path directory) throws IOException {
+    Fold fold = readSnapshot(directory);
+    for (Path segment : rotatedSegments(directory)) {
+      replay(segment, fold, false);
+    }
+    Path log = directory.resolve(LOG_FILE);
+    if (Files.exists(log)) {
+      replay(log, fold, true);
+    }
+    return fold;
+  }
+
+  /**
+   * Resolve the active log of a journal directory.
+   *
+   * @param directory The directory holding the snapshot and the log.
+   * @return The path of the log appended to.
+   */
+  static Path logOf(Path directory) {
+    return directory.resolve(LOG_FILE);
+  }
+
+  /**
+   * Getter for sequence.
+   *
+   * @return The sequence number of the last record appended.
+   */
+  synchronized long sequence() {
+    return sequence;
+  }
+
+  /**
+   * Journal the addition of an entry, whose id is already set.
+   *
+   * @param bookEntry The entry added.
+   * @param nextId The id the book will hand out next.
+   */
+  synchronized void logAdd(BookEntry bookEntry, int nextId) {
+    append(ADD, bookEntry, -1, nextId);
+  }
+
+  /**
+   * Journal the replacement of an entry by another one with the same id.
+   *
+   * @param bookEntry The new entry.
+   */
+  synchronized void logUpdate(BookEntry bookEntry) {
+    append(UPDATE, bookEntry, -1, -1);
+  }
+
+  /**
+   * Journal the removal of an entry.
+   *
+   * @param id The id of the entry removed.
+   */
+  synchronized void logRemove(int id) {
+    append(REMOVE, null, id, -1);
+  }
+
+  /**
+   * Journal the clearing of the book.
+   */
+  synchronized void logClear() {
+    append(CLEAR, null, -1, -1);
+  }
+
+  private void append(String operation, BookEntry bookEntry, int id, int nextId) {
+    checkOpen();
+    try {
+      StringWriter record = new StringWriter();
+      JsonWriter writer = new JsonWriter(record);
+      writer.setSerializeNulls(false);
+      writer.beginObject();
+      writer.name(SEQUENCE).value(sequence + 1);
+      writer.name(OPERATION).value(operation);
+      if (bookEntry != null) {
+        writer.name(ENTRY);
+        EntryJson.write(writer, bookEntry);
+      }
+      if (id >= 0) {
+        writer.name(ID).value(id);
+      }
+      if (nextId >= 0) {
+        writer.name(NEXT_ID).value(nextId);
+      }
+      writer.endObject();
+      writer.close();
+
+      logWriter.write(record.toString());
+      logWriter.write('\n');
+      sequence++;
+      recordsSinceCompaction++;
+      unsyncedRecords++;
+      if (syncEveryRecords > 0 && unsyncedRecords >= syncEveryRecords) {
+        sync();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot append to the journal", e);
+    }
+  }
+
+  private void sync() throws IOException {
+    logWriter.flush();
+    logChannel.force(false);
+    unsyncedRecords = 0;
+  }
+
+  private void checkOpen() {
+    if (logWriter == null || closed) {
+      throw new IllegalStateException("Journal is not open");
+    }
+  }
+
+  private void startBackgroundTasks() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "address-book-journal");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (syncIntervalMillis > 0) {
+      scheduler.scheduleWithFixedDelay(() -> {
+        synchronized (this) {
+          if (!closed && unsyncedRecords > 0) {
+            try {
+              sync();
+            } catch (IOException e) {
+              e.printStackTrace();
+            }
+          }
+        }
+      }, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    if (compactIntervalMillis > 0) {
+      scheduler.scheduleWithFixedDelay(this::compactInBackground, compactIntervalMillis,
+          compactIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Compact as the background compactor does, reporting failures instead of throwing them. A run
+   * which was already due when the journal was closed does nothing.
+   */
+  void compactInBackground() {
+    try {
+      compact();
+    } catch (IOException | RuntimeException e) {
+      synchronized (this) {
+        if (closed) {
+          // close compacted on its own
+          return;
+        }
+      }
+      // the rotated logs stay in place, and the next compaction or recovery picks them up
+      e.printStackTrace();
+    }
+  }
+
+  private BufferedWriter newWriter(FileChannel channel) {
+    return new BufferedWriter(
+        Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), IO_BUFFER_SIZE),
+        IO_BUFFER_SIZE);
+  }
+
+  private static List<Path> rotatedSegments(Path directory) throws IOException {
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, LOG_FILE + ".*")) {
+      for (Path segment : stream) {
+        String suffix = segment.getFileName().toString().substring(LOG_FILE.length() + 1);
+        if (suffix.matches("[0-9]+")) {
+          segments.add(segment);
+        }
+      }
+    }
+    segments.sort((a, b) -> Long.compare(segmentSequence(a), segmentSequence(b)));
+    return segments;
+  }
+
+  private static long segmentSequence(Path segment) {
+    return Long.parseLong(segment.getFileName().toString().substring(LOG_FILE.length() + 1));
+  }
+
+  private static Fold readSnapshot(Path directory) throws IOException {
+    Fold fold = new Fold();
+    Path snapshot = directory.resolve(SNAPSHOT_FILE);
+    if (!Files.exists(snapshot)) {
+      return fold;
+    }
+    try (JsonReader reader = new JsonReader(Files.newBufferedReader(snapshot))) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (SEQUENCE.equals(name)) {
+          fold.sequence = reader.nextLong();
+        } else if (NEXT_ID.equals(name)) {
+          fold.nextId = reader.nextInt();
+        } else if (ENTRIES.equals(name)) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            BookEntry bookEntry = EntryJson.read(reader);
+            fold.entries.put(bookEntry.getId(), bookEntry);
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    } catch (JsonParseException | IllegalStateException e) {
+      throw new IOException("Snapshot is corrupt: " + snapshot, e);
+    }
+    return fold;
+  }
+
+  private void writeSnapshot(Fold fold) throws IOException {
+    Path snapshot = directory.resolve(SNAPSHOT_FILE);
+    Path temp = directory.resolve(SNAPSHOT_FILE + TEMP_SUFFIX);
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      JsonWriter writer = new JsonWriter(newWriter(channel));
+      writer.setSerializeNulls(false);
+      writer.beginObject();
+      writer.name(SEQUENCE).value(fold.sequence);
+      writer.name(NEXT_ID).value(fold.nextId);
+      writer.name(ENTRIES).beginArray();
+      for (BookEntry bookEntry : fold.entries.values()) {
+        EntryJson.write(writer, bookEntry);
+      }
+      writer.endArray();
+      writer.endObject();
+      writer.flush();
+      channel.force(true);
+    }
+    Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Apply the records of a log file that come after the fold.
+   *
+   * @return The length in bytes of the well-formed records at the start of the file.
+   */
+  private static long replay(Path log, Fold fold, boolean tolerateTornTail) throws IOException {
+    long validLength = 0;
+    // Lines are split as bytes and decoded one at a time, so that a record torn inside a
+    // multi-byte character only spoils its own line
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(log), IO_BUFFER_SIZE)) {
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      while (readLine(in, line)) {
+        Record record;
+        try {
+          record = parse(decode(line.toByteArray()));
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+          if (tolerateTornTail && in.read() < 0) {
+            break;
+          }
+          throw new IOException("Journal record is corrupt in " + log, e);
+        }
+        validLength += line.size() + 1;
+        if (record.sequence > fold.sequence) {
+          fold.apply(record);
+        }
+      }
+    }
+    return validLength;
+  }
+
+  /**
+   * Read the bytes of the next line, without its newline.
+   *
+   * @return false if the stream had no byte left.
+   */
+  private static boolean readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+    line.reset();
+    int b;
+    while ((b = in.read()) >= 0) {
+      if (b == '\n') {
+        return true;
+      }
+      line.write(b);
+    }
+    return line.size() > 0;
+  }
+
+  private static String decode(byte[] line) throws CharacterCodingException {
+    // the decoder reports malformed input rather than replacing it
+    return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(line)).toString();
+  }
+
+  /**
+   * Parse one line of a log.
+   *
+   * @param line The line, without its newline.
+   * @return The record.
+   * @throws IOException if the line is not a complete record.
+   */
+  static Record parse(String line) throws IOException {
+    Record record = new Record();
+    JsonReader reader = new JsonReader(new StringReader(line));
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (SEQUENCE.equals(name)) {
+        record.sequence = reader.nextLong();
+      } else if (OPERATION.equals(name)) {
+        record.operation = reader.nextString();
+      } else if (ENTRY.equals(name)) {
+        record.bookEntry = EntryJson.read(reader);
+      } else if (ID.equals(name)) {
+        record.id = reader.nextInt();
+      } else if (NEXT_ID.equals(name)) {
+        record.nextId = reader.nextInt();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (record.operation == null || record.sequence <= 0) {
+      throw new IOException("Journal record is incomplete: " + line);
+    }
+    return record;
+  }
+
+  /**
+   * One record of the log.
+   */
+  static final class Record {
+    private long sequence;
+    private String operation;
+    private BookEntry bookEntry;
+    private int id = -1;
+    private int nextId = -1;
+
+    /**
+     * Getter for sequence.
+     *
+     * @return The sequence number of the record.
+     */
+    long sequence() {
+      return sequence;
+    }
+
+    /**
+     * Make the change of the record to a book which is in the state the record follows.
+     *
+     * @param addressBook The book to be changed.
+     * @throws IOException if the record does not fit the book.
+     */
+    void applyTo(AddressBook addressBook) throws IOException {
+      try {
+        switch (operation) {
+          case ADD:
+            addressBook.addEntryWithId(bookEntry, bookEntry.getId());
+            break;
+          case UPDATE:
+            addressBook.updateEntryById(bookEntry.getId(), bookEntry);
+            break;
+          case REMOVE:
+            addressBook.removeEntryById(id);
+            break;
+          case CLEAR:
+            addressBook.clear();
+            break;
+          default:
+            throw new IOException("Unknown journal operation: " + operation);
+        }
+      } catch (RuntimeException e) {
+        throw new IOException("Journal record does not fit the book at sequence " + sequence, e);
+      }
+    }
+  }
+
+  /**
+   * The state of the book as of some sequence number, rebuilt from the snapshot and the log.
+   */
+  static final class Fold {
+    private long sequence;
+    private int nextId;
+    private long replayed;
+    // insertion ordered like the book itself, and put keeps the position of an updated entry
+    private final Map<Integer, BookEntry> entries = new LinkedHashMap<>();
+
+    /**
+     * Getter for sequence.
+     *
+     * @return The sequence number of the last record folded in.
+     */
+    long sequence() {
+      return sequence;
+    }
+
+    /**
+     * Getter for nextId.
+     *
+     * @return The id the book hands out next.
+     */
+    int nextId() {
+      return nextId;
+    }
+
+    /**
+     * Getter for entries.
+     *
+     * @return The entries of the book, in book order.
+     */
+    Collection<BookEntry> entries() {
+      return entries.values();
+    }
+
+    private void apply(Record record) throws IOException {
+      switch (record.operation) {
+        case ADD:
+        case UPDATE:
+          if (record.bookEntry == null) {
+            throw new IOException("Journal record has no entry at sequence " + record.sequence);
+          }
+          entries.put(record.bookEntry.getId(), record.bookEntry);
+          break;
+        case REMOVE:
+          entries.remove(record.id);
+          break;
+        case CLEAR:
+          entries.clear();
+          nextId = 0;
+          break;
+        default:
+          throw new IOException("Unknown journal operation: " + record.operation);
+      }
+      if (record.nextId >= 0) {
+        nextId = record.nextId;
+      }
+      sequence = record.sequence;
+      replayed++;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package addressbook;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A MetricsListener aggregating the measurements of each operation: a latency histogram and the
+ * totals of operations, entries scanned, results and bytes transferred. It may be shared by
+ * several address books and read while they run.
+ *
+ * @author Lei Guo
+ */
+public class AddressBookMetrics implements MetricsListener {
+  private final Map<Operation, Totals> totals;
+
+  /**
+   * The measurements of one operation.
+   */
+  private static final class Totals {
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder results = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+  }
+
+  /**
+   * Constructor for AddressBookMetrics
+   */
+  public AddressBookMetrics() {
+    this.totals = new EnumMap<>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      totals.put(operation, new Totals());
+    }
+  }
+
+  @Override
+  public void searched(Operation operation, long nanos, int entriesScanned, int resultSize) {
+    Totals total = totals.get(operation);
+    total.latencies.record(nanos);
+    total.count.increment();
+    total.nanos.add(nanos);
+    total.entries.add(entriesScanned);
+    total.results.add(resultSize);
+  }
+
+  @Override
+  public void transferred(Operation operation, long nanos, long bytes, int entries) {
+    Totals total = totals.get(operation);
+    total.latencies.record(nanos);
+    total.count.increment();
+    total.nanos.add(nanos);
+    total.entries.add(entries);
+    total.bytes.add(bytes);
+  }
+
+  /**
+   * Get the number of times an operation ran.
+   *
+   * @param operation The operation.
+   * @return The number of measurements.
+   */
+  public long getCount(Operation operation) {
+    return totals.get(operation).count.sum();
+  }
+
+  /**
+   * Get the mean latency of an operation.
+   *
+   * @param operation The operation.
+   * @return The mean latency in nanoseconds, or 0 if the operation never ran.
+   */
+  public double getMeanNanos(Operation operation) {
+    Totals total = totals.get(operation);
+    long count = total.count.sum();
+    return count == 0 ? 0 : (double) total.nanos.sum() / count;
+  }
+
+  /**
+   * Estimate a percentile of the latency of an operation, to within 25%.
+   *
+   * @param operation The operation.
+   * @param fraction The percentile as a fraction between 0 and 1, e.g. 0.99.
+   * @return The latency in nanoseconds, or 0 if the operation never ran.
+   */
+  public long getPercentileNanos(Operation operation, double fraction) {
+    if (fraction < 0 || fraction > 1) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 1");
+    }
+    return totals.get(operation).latencies.percentile(fraction);
+  }
+
+  /**
+   * Get the total number of entries an operation went through: the entries scanned by searches,
+   * or the entries written or read by transfers.
+   *
+   * @param operation The operation.
+   * @return The total number of entries.
+   */
+  public long getEntries(Operation operation) {
+    return totals.get(operation).entries.sum();
+  }
+
+  /**
+   * Get the total number of results of a search operation.
+   *
+   * @param operation The operation.
+   * @return The total number of entries found.
+   */
+  public long getResults(Operation operation) {
+    return totals.get(operation).results.sum();
+  }
+
+  /**
+   * Get the total number of bytes written or read by a transfer operation.
+   *
+   * @param operation The operation.
+   * @return The total number of bytes.
+   */
+  public long getBytes(Operation operation) {
+    return totals.get(operation).bytes.sum();
+  }
+
+  /**
+   * Override toString() for the metrics, with one line per operation that ran.
+   *
+   * @return The summary of the measurements.
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (Operation operation : Operation.values()) {
+      long count = getCount(operation);
+      if (count == 0) {
+        continue;
+      }
+      result.append(operation).append(": count=").append(count)
+          .append(String.format(" mean=%.0fns", getMeanNanos(operation)))
+          .append(" p50=").append(getPercentileNanos(operation, 0.5)).append("ns")
+          .append(" p99=").append(getPercentileNanos(operation, 0.99)).append("ns")
+          .append(" entries=").append(getEntries(operation))
+          .append(" results=").append(getResults(operation))
+          .append(" bytes=").append(getBytes(operation)).append('\n');
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,259 @@
+package addressbook;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The binary snapshot format of an address book, read through a memory mapping so that opening a
+ * snapshot only reads its header and entries are decoded when they are touched.
+ *
+ * <p>
+ * All integers are big-endian. The file starts with a header of four ints: the magic number
+ * "ABSN", the format version, the number of entries and the id the book hands out next. Then comes
+ * the offset table, the int offset of every entry record from the start of the file, in book
+ * order. A record is the id of the entry followed by every attribute in EntryField order, each as
+ * an int length and that many bytes of UTF-8, with the length -1 for a missing attribute. Ids
+ * increase with position, as in the book, so an entry is found by id with a binary search of the
+ * records.
+ *
+ * <p>
+ * A mapping cannot exceed 2 GB, and neither can a snapshot.
+ *
+ * @author Lei Guo
+ */
+final class BinarySnapshot implements Iterable<BookEntry> {
+  private static final int MAGIC = 0x4142534E;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 * Integer.BYTES;
+  private static final int MISSING = -1;
+  private static final int IO_BUFFER_SIZE = 1 << 16;
+
+  private final MappedByteBuffer buffer;
+  private final int size;
+  private final int nextId;
+
+  private BinarySnapshot(MappedByteBuffer buffer, int size, int nextId) {
+    this.buffer = buffer;
+    this.size = size;
+    this.nextId = nextId;
+  }
+
+  /**
+   * Write book entries to a snapshot file.
+   *
+   * @param path The output path.
+   * @param entries The entries in book order.
+   * @param size The number of entries.
+   * @param nextId The id the book hands out next.
+   * @throws IOException if the file cannot be written or would exceed 2 GB.
+   */
+  static void write(String path, Iterable<BookEntry> entries, int size, int nextId)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      // The records go first, behind room left for the header and the offset table
+      long tableEnd = HEADER_SIZE + (long) size * Integer.BYTES;
+      channel.position(tableEnd);
+      int[] offsets = new int[size];
+      DataOutputStream output = new DataOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFFER_SIZE));
+      long offset = tableEnd;
+      int count = 0;
+      for (BookEntry bookEntry : entries) {
+        if (count == size || offset > Integer.MAX_VALUE) {
+          throw new IOException(count == size ? "More entries than the size given"
+              : "Snapshot is too large to be mapped");
+        }
+        offsets[count++] = (int) offset;
+        output.writeInt(bookEntry.getId());
+        offset += Integer.BYTES;
+        for (EntryField field : EntryField.FIELDS) {
+          String value = field.valueOf(bookEntry);
+          if (value == null) {
+            output.writeInt(MISSING);
+            offset += Integer.BYTES;
+          } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+            offset += Integer.BYTES + bytes.length;
+          }
+        }
+      }
+      output.flush();
+      if (count != size) {
+        throw new IOException("Fewer entries than the size given");
+      }
+      if (offset > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot is too large to be mapped");
+      }
+
+      ByteBuffer table = ByteBuffer.allocate((int) tableEnd);
+      table.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(nextId);
+      table.asIntBuffer().put(offsets);
+      table.rewind();
+      while (table.hasRemaining()) {
+        channel.write(table, table.position());
+      }
+    }
+  }
+
+  /**
+   * Map a snapshot file into memory. Only the header is read.
+   *
+   * @param path The input path.
+   * @return The snapshot.
+   * @throws IOException if the file cannot be mapped or is not a snapshot of a known version.
+   */
+  static BinarySnapshot open(String path) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+        throw new IOException("Not an address book snapshot: " + path);
+      }
+      // the mapping stays valid once the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not an address book snapshot: " + path);
+      }
+      int version = buffer.getInt(Integer.BYTES);
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version " + version + ": " + path);
+      }
+      int size = buffer.getInt(2 * Integer.BYTES);
+      if (size < 0 || HEADER_SIZE + (long) size * Integer.BYTES > length) {
+        throw new IOException("Truncated address book snapshot: " + path);
+      }
+      return new BinarySnapshot(buffer, size, buffer.getInt(3 * Integer.BYTES));
+    }
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of entries in the snapshot.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Getter for nextId.
+   *
+   * @return The id the book hands out next.
+   */
+  int nextId() {
+    return nextId;
+  }
+
+  /**
+   * Decode the entry at a position.
+   *
+   * @param position A position less than size().
+   * @return The entry, with its id set.
+   */
+  BookEntry entryAt(int position) {
+    int offset = offsetAt(position);
+    int id = buffer.getInt(offset);
+    offset += Integer.BYTES;
+    String[] values = new String[EntryField.FIELDS.length];
+    for (int field = 0; field < values.length; field++) {
+      int length = buffer.getInt(offset);
+      offset += Integer.BYTES;
+      if (length != MISSING) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+          bytes[i] = buffer.get(offset + i);
+        }
+        values[field] = new String(bytes, StandardCharsets.UTF_8);
+        offset += length;
+      }
+    }
+    return BookEntry.fromTrustedValues(id, values);
+  }
+
+  /**
+   * Find the position of an entry by id.
+   *
+   * @param id The id of the entry.
+   * @return The position of the entry, or -1 if there is no entry with that id.
+   */
+  int positionOf(int id) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int middleId = buffer.getInt(offsetAt(middle));
+      if (middleId < id) {
+        low = middle + 1;
+      } else if (middleId > id) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Determine if an attribute of the entry at a position contains a byte sequence, without
+   * decoding the entry.
+   *
+   * @param position A position less than size().
+   * @param needle The UTF-8 bytes of the query.
+   * @return true if an attribute contains the sequence.
+   */
+  boolean matches(int position, byte[] needle) {
+    int offset = offsetAt(position) + Integer.BYTES;
+    for (int field = 0; field < EntryField.FIELDS.length; field++) {
+      int length = buffer.getInt(offset);
+      offset += Integer.BYTES;
+      if (length != MISSING) {
+        if (ByteSearch.contains(buffer, offset, length, needle)) {
+          return true;
+        }
+        offset += length;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Iterate the entries in book order, decoding one at a time.
+   *
+   * @return The iterator over the entries.
+   */
+  @Override
+  public Iterator<BookEntry> iterator() {
+    return new Iterator<BookEntry>() {
+      private int position = 0;
+
+      @Override
+      public boolean hasNext() {
+        return position < size;
+      }
+
+      @Override
+      public BookEntry next() {
+        if (position >= size) {
+          throw new NoSuchElementException();
+        }
+        return entryAt(position++);
+      }
+    };
+  }
+
+  private int offsetAt(int position) {
+    return buffer.getInt(HEADER_SIZE + position * Integer.BYTES);
+  }
+}
@@ -1,5 +1,8 @@
 package addressbook;
 
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,14 +20,21 @@ public class BookEntry {
 
   private int id = -1;
 
+  // Case- and accent-folded copies of the attributes, in EntryField order, each computed on its
+  // first use; threads racing for one at worst fold it twice
+  private transient String[] foldedValues;
+
+  private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
   /**
    * The Builder class for BookEntry using the BuilderPattern.
    */
   public static class Builder {
 
-    private final String PHONE_REGEX = "^\\+?[0-9. ()-]{10,25}$";
-    private final String EMAIL_REGEX =
-        "^[\\w-\\+]+(\\.[\\w]+)*@[\\w-]+(\\.[\\w]+)*(\\.[a-zA-Z]{2,})$";
+    // Compiled once and shared, Patterns being safe to use from several threads
+    private static final Pattern PHONE_PATTERN = Pattern.compile("^\\+?[0-9. ()-]{10,25}$");
+    private static final Pattern EMAIL_PATTERN =
+        Pattern.compile("^[\\w-\\+]+(\\.[\\w]+)*@[\\w-]+(\\.[\\w]+)*(\\.[a-zA-Z]{2,})$");
 
     // Required parameters
     private String name;
@@ -55,8 +65,7 @@ public class BookEntry {
      */
     public Builder phoneNumber(String phoneNumber) {
       if (phoneNumber != null) {
-        Pattern pattern = Pattern.compile(PHONE_REGEX);
-        Matcher matcher = pattern.matcher(phoneNumber);
+        Matcher matcher = PHONE_PATTERN.matcher(phoneNumber);
         if (matcher.matches()) {
           this.phoneNumber = phoneNumber;
         } else {
@@ -74,8 +83,7 @@ public class BookEntry {
      */
     public Builder emailAddress(String emailAddress) {
       if (emailAddress != null) {
-        Pattern pattern = Pattern.compile(EMAIL_REGEX);
-        Matcher matcher = pattern.matcher(emailAddress);
+        Matcher matcher = EMAIL_PATTERN.matcher(emailAddress);
         if (matcher.matches()) {
           this.emailAddress = emailAddress;
         } else {
@@ -129,6 +137,41 @@ public class BookEntry {
     note = builder.note;
   }
 
+  /**
+   * Create an entry from values which are already known to be valid, such as values read back
+   * from the storage of an address book, without validating them again.
+   * 
+   * @param id The id of the entry.
+   * @param values The attributes in EntryField order; the name must not be null.
+   * @return The new entry.
+   */
+  static BookEntry fromTrustedValues(int id, String... values) {
+    Builder builder = new Builder(values[EntryField.NAME.ordinal()]);
+    builder.phoneNumber = values[EntryField.PHONE_NUMBER.ordinal()];
+    builder.emailAddress = values[EntryField.EMAIL_ADDRESS.ordinal()];
+    builder.postalAddress = values[EntryField.POSTAL_ADDRESS.ordinal()];
+    builder.note = values[EntryField.NOTE.ordinal()];
+    BookEntry bookEntry = new BookEntry(builder);
+    bookEntry.setId(id);
+    return bookEntry;
+  }
+
+  /**
+   * Fold a string for case- and accent-insensitive matching: decompose it, drop the combining
+   * marks and lower-case what is left, so that "Zo&euml;" and "ZOE" both fold to "zoe".
+   * 
+   * @param value The string to be folded, may be null.
+   * @return The folded string, the same instance if folding does not change it, or null.
+   */
+  static String fold(String value) {
+    if (value == null) {
+      return null;
+    }
+    String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+    String folded = COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    return folded.equals(value) ? value : folded;
+  }
+
   /**
    * Setter for id.
    * 
@@ -208,6 +251,46 @@ public class BookEntry {
     return false;
   }
 
+  /**
+   * Determine if this entry matches a query, ignoring case and accents.
+   * 
+   * @param foldedQuery The query string, already folded with fold.
+   * @return true if one of the entry's folded attributes contains the query.
+   */
+  boolean matchesFolded(String foldedQuery) {
+    for (EntryField field : EntryField.FIELDS) {
+      String foldedValue = foldedValueOf(field);
+      if (foldedValue != null && foldedValue.contains(foldedQuery)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Read the folded copy of an attribute, folding it on the first call.
+   * 
+   * @param field The attribute.
+   * @return The attribute folded with fold, or null if the entry does not have it.
+   */
+  String foldedValueOf(EntryField field) {
+    String value = field.valueOf(this);
+    if (value == null) {
+      return null;
+    }
+    String[] folded = foldedValues;
+    if (folded == null) {
+      folded = new String[EntryField.FIELDS.length];
+      foldedValues = folded;
+    }
+    String foldedValue = folded[field.ordinal()];
+    if (foldedValue == null) {
+      foldedValue = fold(value);
+      folded[field.ordinal()] = foldedValue;
+    }
+    return foldedValue;
+  }
+
   /**
    * Override the hashCode function.
    * 
@@ -265,10 +348,30 @@ public class BookEntry {
       return false;
     }
     BookEntry bookEntry = (BookEntry) o;
-    return id == bookEntry.getId() && name.equals(bookEntry.getName())
-        && phoneNumber.equals(bookEntry.getPhoneNumber())
-        && emailAddress.equals(bookEntry.getEmailAddress())
-        && postalAddress.equals(bookEntry.getPostalAddress()) && note.equals(bookEntry.getNote());
+    return id == bookEntry.getId() && hasSameContent(bookEntry);
+  }
+
+  /**
+   * Determine if this entry holds the same values as another one, regardless of their ids.
+   * 
+   * @param bookEntry The other entry to compared with.
+   * @return true if every attribute but the id is equal.
+   */
+  boolean hasSameContent(BookEntry bookEntry) {
+    return Objects.equals(name, bookEntry.getName())
+        && Objects.equals(phoneNumber, bookEntry.getPhoneNumber())
+        && Objects.equals(emailAddress, bookEntry.getEmailAddress())
+        && Objects.equals(postalAddress, bookEntry.getPostalAddress())
+        && Objects.equals(note, bookEntry.getNote());
+  }
+
+  /**
+   * Generate a hash code from every attribute but the id, consistent with hasSameContent.
+   * 
+   * @return The hash code generated.
+   */
+  int contentHashCode() {
+    return Objects.hash(name, phoneNumber, emailAddress, postalAddress, note);
   }
 
   /**
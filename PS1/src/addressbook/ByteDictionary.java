@@ -0,0 +1,245 @@
+package addressbook;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A dictionary encoding distinct strings as int codes, for column storage. The strings are kept
+ * as UTF-8 bytes (a single byte per character for Latin text) back to back in one byte array, and
+ * every code is described by an offset, a length and a reference count in primitive arrays, so
+ * the dictionary holds no object per string. Codes whose count drops to zero are recycled.
+ *
+ * @author Lei Guo
+ */
+final class ByteDictionary {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int EMPTY = -1;
+
+  private byte[] bytes;
+  private int bytesUsed;
+  private int bytesFreed;
+
+  private int[] offsets;
+  private int[] lengths;
+  private int[] hashes;
+  private int[] refCounts;
+  private int codeLimit;
+
+  private int[] freeCodes;
+  private int freeCount;
+
+  // open-addressing table of codes, keyed by the hash of their bytes
+  private int[] table;
+  private int tableUsed;
+
+  /**
+   * Constructor for ByteDictionary.
+   */
+  ByteDictionary() {
+    this.bytes = new byte[INITIAL_CAPACITY * 16];
+    this.offsets = new int[INITIAL_CAPACITY];
+    this.lengths = new int[INITIAL_CAPACITY];
+    this.hashes = new int[INITIAL_CAPACITY];
+    this.refCounts = new int[INITIAL_CAPACITY];
+    this.freeCodes = new int[INITIAL_CAPACITY];
+    this.table = new int[INITIAL_CAPACITY * 2];
+    Arrays.fill(table, EMPTY);
+  }
+
+  /**
+   * Take a reference to the code of a string, adding the string if it is new.
+   *
+   * @param value The string.
+   * @return The code of the string.
+   */
+  int acquire(String value) {
+    byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(encoded);
+    int mask = table.length - 1;
+    for (int slot = hash & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+      int code = table[slot];
+      if (hashes[code] == hash && equalsAt(code, encoded)) {
+        refCounts[code]++;
+        return code;
+      }
+    }
+
+    int code = freeCount > 0 ? freeCodes[--freeCount] : newCode();
+    if (bytesUsed + encoded.length > bytes.length) {
+      compactBytes(encoded.length);
+    }
+    System.arraycopy(encoded, 0, bytes, bytesUsed, encoded.length);
+    offsets[code] = bytesUsed;
+    lengths[code] = encoded.length;
+    hashes[code] = hash;
+    refCounts[code] = 1;
+    bytesUsed += encoded.length;
+    insert(code);
+    return code;
+  }
+
+  /**
+   * Look up the code of a string without taking a reference.
+   *
+   * @param value The string.
+   * @return The code of the string, or -1 if the dictionary does not hold it.
+   */
+  int codeOf(String value) {
+    byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(encoded);
+    int mask = table.length - 1;
+    for (int slot = hash & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+      int code = table[slot];
+      if (hashes[code] == hash && equalsAt(code, encoded)) {
+        return code;
+      }
+    }
+    return EMPTY;
+  }
+
+  /**
+   * Drop a reference to a code, freeing the code when it was the last one.
+   *
+   * @param code The code.
+   */
+  void release(int code) {
+    if (--refCounts[code] > 0) {
+      return;
+    }
+    bytesFreed += lengths[code];
+    freeCodes = ensureCapacity(freeCodes, freeCount + 1);
+    freeCodes[freeCount++] = code;
+    removeFromTable(code);
+  }
+
+  /**
+   * Decode a code back to its string.
+   *
+   * @param code The code.
+   * @return The string.
+   */
+  String decode(int code) {
+    return new String(bytes, offsets[code], lengths[code], StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Find the codes whose string contains a substring.
+   *
+   * @param needle The UTF-8 bytes of the substring.
+   * @return The set of matching codes.
+   */
+  BitSet codesContaining(byte[] needle) {
+    BitSet matches = new BitSet(codeLimit);
+    for (int code = 0; code < codeLimit; code++) {
+      if (refCounts[code] > 0 && ByteSearch.contains(bytes, offsets[code], lengths[code], needle)) {
+        matches.set(code);
+      }
+    }
+    return matches;
+  }
+
+  private int newCode() {
+    if (codeLimit == offsets.length) {
+      int capacity = offsets.length * 2;
+      offsets = Arrays.copyOf(offsets, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      hashes = Arrays.copyOf(hashes, capacity);
+      refCounts = Arrays.copyOf(refCounts, capacity);
+    }
+    return codeLimit++;
+  }
+
+  private void insert(int code) {
+    if ((tableUsed + 1) * 2 > table.length) {
+      int[] old = table;
+      table = new int[old.length * 2];
+      Arrays.fill(table, EMPTY);
+      tableUsed = 0;
+      for (int other : old) {
+        if (other != EMPTY) {
+          insert(other);
+        }
+      }
+    }
+    int mask = table.length - 1;
+    int slot = hashes[code] & mask;
+    while (table[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = code;
+    tableUsed++;
+  }
+
+  /**
+   * Take a code out of the table, moving later codes of the same probe run back into the gap.
+   */
+  private void removeFromTable(int code) {
+    int mask = table.length - 1;
+    int gap = hashes[code] & mask;
+    while (table[gap] != code) {
+      gap = (gap + 1) & mask;
+    }
+    int slot = gap;
+    while (true) {
+      slot = (slot + 1) & mask;
+      if (table[slot] == EMPTY) {
+        break;
+      }
+      int home = hashes[table[slot]] & mask;
+      boolean movable = gap <= slot ? (home <= gap || home > slot) : (home <= gap && home > slot);
+      if (movable) {
+        table[gap] = table[slot];
+        gap = slot;
+      }
+    }
+    table[gap] = EMPTY;
+    tableUsed--;
+  }
+
+  private boolean equalsAt(int code, byte[] encoded) {
+    if (lengths[code] != encoded.length) {
+      return false;
+    }
+    int offset = offsets[code];
+    for (int i = 0; i < encoded.length; i++) {
+      if (bytes[offset + i] != encoded[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Make room for more bytes, squeezing out the bytes of freed codes first if they are worth it.
+   */
+  private void compactBytes(int needed) {
+    if (bytesFreed * 2 > bytesUsed) {
+      byte[] compacted = new byte[Math.max(bytes.length, (bytesUsed - bytesFreed + needed) * 2)];
+      int used = 0;
+      for (int code = 0; code < codeLimit; code++) {
+        if (refCounts[code] > 0) {
+          System.arraycopy(bytes, offsets[code], compacted, used, lengths[code]);
+          offsets[code] = used;
+          used += lengths[code];
+        }
+      }
+      bytes = compacted;
+      bytesUsed = used;
+      bytesFreed = 0;
+    }
+    if (bytesUsed + needed > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, bytesUsed + needed));
+    }
+  }
+
+  private static int hash(byte[] encoded) {
+    int hash = Arrays.hashCode(encoded);
+    // spread the high bits down, since only the low bits pick a slot
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int[] ensureCapacity(int[] array, int capacity) {
+    return capacity <= array.length ? array : Arrays.copyOf(array, array.length * 2);
+  }
+}
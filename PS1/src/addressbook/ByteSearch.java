@@ -0,0 +1,75 @@
+package addressbook;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Substring search over UTF-8 bytes. UTF-8 is self-synchronizing, so the bytes of a string contain
+ * the bytes of another exactly when the string contains the other, and stored values can be
+ * searched without decoding them.
+ *
+ * @author Lei Guo
+ */
+final class ByteSearch {
+  private ByteSearch() {}
+
+  /**
+   * Determine if a range of a byte array contains a byte sequence.
+   *
+   * @param haystack The array to search in.
+   * @param offset The start of the range.
+   * @param length The length of the range.
+   * @param needle The sequence to search for.
+   * @return true if the sequence occurs in the range.
+   */
+  static boolean contains(byte[] haystack, int offset, int length, byte[] needle) {
+    if (needle.length == 0) {
+      return true;
+    }
+    byte first = needle[0];
+    int last = offset + length - needle.length;
+    for (int i = offset; i <= last; i++) {
+      if (haystack[i] != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < needle.length && haystack[i + j] == needle[j]) {
+        j++;
+      }
+      if (j == needle.length) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Determine if a range of a buffer contains a byte sequence, reading the buffer with absolute
+   * gets so that its position is left alone.
+   *
+   * @param haystack The buffer to search in.
+   * @param offset The start of the range.
+   * @param length The length of the range.
+   * @param needle The sequence to search for.
+   * @return true if the sequence occurs in the range.
+   */
+  static boolean contains(ByteBuffer haystack, int offset, int length, byte[] needle) {
+    if (needle.length == 0) {
+      return true;
+    }
+    byte first = needle[0];
+    int last = offset + length - needle.length;
+    for (int i = offset; i <= last; i++) {
+      if (haystack.get(i) != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < needle.length && haystack.get(i + j) == needle[j]) {
+        j++;
+      }
+      if (j == needle.length) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
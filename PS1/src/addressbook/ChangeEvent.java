@@ -0,0 +1,90 @@
+package addressbook;
+
+/**
+ * One change of an AddressBook. Changes are numbered in the order they were made, without gaps;
+ * for a book opened through an AddressBookJournal, the sequence number of a change is that of its
+ * record in the journal.
+ *
+ * @author Lei Guo
+ */
+public class ChangeEvent {
+  private final long sequence;
+  private final Type type;
+  private final BookEntry bookEntry;
+  private final int id;
+
+  /**
+   * The kinds of change.
+   */
+  public enum Type {
+    /** An entry was added. */
+    ADDED,
+    /** An entry was replaced by another one with the same id. */
+    UPDATED,
+    /** An entry was removed. */
+    REMOVED,
+    /** Every entry was removed. */
+    CLEARED
+  }
+
+  /**
+   * Constructor for ChangeEvent.
+   *
+   * @param sequence The sequence number of the change.
+   * @param type The kind of change.
+   * @param bookEntry The entry added, the new entry or the entry removed; null for CLEARED.
+   */
+  ChangeEvent(long sequence, Type type, BookEntry bookEntry) {
+    this.sequence = sequence;
+    this.type = type;
+    this.bookEntry = bookEntry;
+    // kept apart, since an entry removed and added again gets a new id
+    this.id = bookEntry == null ? -1 : bookEntry.getId();
+  }
+
+  /**
+   * Getter for sequence.
+   *
+   * @return The sequence number of the change, from 1 for the first change of a new book.
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Getter for type.
+   *
+   * @return The kind of change.
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Getter for bookEntry.
+   *
+   * @return The entry added, the new entry or the entry removed; null for CLEARED.
+   */
+  public BookEntry getBookEntry() {
+    return bookEntry;
+  }
+
+  /**
+   * Getter for id.
+   *
+   * @return The id of the entry at the time of the change, or -1 for CLEARED.
+   */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * Override toString() for the ChangeEvent.
+   *
+   * @return The sequence number, the kind of change and the entry.
+   */
+  @Override
+  public String toString() {
+    return sequence + " " + type + (bookEntry == null ? "" : " " + bookEntry);
+  }
+}
@@ -0,0 +1,17 @@
+package addressbook;
+
+/**
+ * Receives every change of an AddressBook it is attached to with AddressBook.addChangeListener.
+ * Listeners are called on the thread changing the book, after the change is made, in sequence
+ * order, so they should be quick.
+ *
+ * @author Lei Guo
+ */
+public interface ChangeListener {
+  /**
+   * Called after the book changed.
+   *
+   * @param event The change.
+   */
+  void changed(ChangeEvent event);
+}
@@ -0,0 +1,487 @@
+package addressbook;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An EntryBook storing its entries in columns rather than as BookEntry objects, built to hold
+ * millions of entries in a small heap. No BookEntry is kept: every attribute is stored as an int
+ * code of a per-attribute ByteDictionary, in one int array per attribute, so repeated values such
+ * as addresses and notes are stored once and each entry costs a handful of ints. BookEntry
+ * objects are materialized from the codes whenever an entry is returned, and are fresh copies that
+ * do not change the book.
+ *
+ * <p>
+ * The book keeps no search index. A search looks the query up once in each dictionary, which
+ * holds every distinct value a single time, and then scans the int codes of the rows.
+ *
+ * @author Lei Guo
+ */
+public class CompactAddressBook implements EntryBook {
+  private static final int INITIAL_CAPACITY = 16;
+  /** The code of an attribute the entry does not have. */
+  private static final int NULL_CODE = -1;
+  /** The id of a removed row. */
+  private static final int REMOVED = -1;
+  // slots of the content table
+  private static final int EMPTY = -1;
+  private static final int DELETED = -2;
+
+  private final ByteDictionary[] dictionaries;
+  // codes[field][row], in insertion order, with holes for removed rows
+  private int[][] codes;
+  private int[] ids;
+  private int limit;
+  private int size;
+  private final IntIntHashMap rows;
+
+  // open-addressing table of rows keyed by the hash of their codes, for duplicate detection
+  private int[] contentTable;
+  private int contentTableUsed;
+  private int nextId;
+
+  /**
+   * Constructor for CompactAddressBook
+   */
+  public CompactAddressBook() {
+    this.dictionaries = new ByteDictionary[EntryField.FIELDS.length];
+    for (int field = 0; field < dictionaries.length; field++) {
+      dictionaries[field] = new ByteDictionary();
+    }
+    this.rows = new IntIntHashMap();
+    reset();
+  }
+
+  /**
+   * Add a new BookEntry to the AddressBook. The entry's values are copied into the book and the
+   * entry itself is not kept.
+   *
+   * @param bookEntry The book entry to be added.
+   * @return true if the book entry could be add to the address book successfully, false if an
+   *         entry with the same content is already in it.
+   */
+  @Override
+  public boolean addEntry(BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    if (findRow(bookEntry) != EMPTY) {
+      return false;
+    }
+
+    if (limit == ids.length) {
+      grow();
+    }
+    if ((contentTableUsed + 1) * 2 > contentTable.length) {
+      rebuildContentTable(Math.max(contentTable.length, Integer.highestOneBit((size + 1) * 4)));
+    }
+    int row = limit++;
+    for (EntryField field : EntryField.FIELDS) {
+      String value = field.valueOf(bookEntry);
+      codes[field.ordinal()][row] = value == null ? NULL_CODE
+          : dictionaries[field.ordinal()].acquire(value);
+    }
+    bookEntry.setId(nextId);
+    ids[row] = nextId;
+    rows.put(nextId, row);
+    nextId++;
+    size++;
+    insertContent(row);
+    return true;
+  }
+
+  /**
+   * Remove an BookEntry (Object) from the AddressBook.
+   *
+   * @param bookEntry The book entry to be removed.
+   * @return true if the book entry could be removed successfully.
+   */
+  @Override
+  public boolean removeEntry(BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    int row = rows.get(bookEntry.getId());
+    if (row == IntIntHashMap.NO_VALUE || !bookEntry.equals(materialize(row))) {
+      return false;
+    }
+    removeRow(row);
+    return true;
+  }
+
+  /**
+   * Remove an BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry to be removed.
+   * @return The book entry removed.
+   */
+  @Override
+  public BookEntry removeEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    int row = rows.get(id);
+    if (row == IntIntHashMap.NO_VALUE) {
+      throw new NoSuchElementException("The contact want to be removed does not exist");
+    }
+    BookEntry bookEntry = materialize(row);
+    removeRow(row);
+    return bookEntry;
+  }
+
+  /**
+   * Get a BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry.
+   * @return A copy of the book entry with that id.
+   */
+  @Override
+  public BookEntry getEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    int row = rows.get(id);
+    if (row == IntIntHashMap.NO_VALUE) {
+      throw new NoSuchElementException("The contact with this id does not exist");
+    }
+    return materialize(row);
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of book entries in the AddressBook.
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Clear the AddressBook
+   */
+  @Override
+  public void clear() {
+    for (int field = 0; field < dictionaries.length; field++) {
+      dictionaries[field] = new ByteDictionary();
+    }
+    rows.clear();
+    reset();
+  }
+
+  /**
+   * Search for book entries which match the query string. Each dictionary is searched once for
+   * the values containing the query, then the rows are picked by their codes.
+   *
+   * @param query string to be queried.
+   * @return List of copies of the book entries which match the query, in the order they were
+   *         added.
+   */
+  @Override
+  public List<BookEntry> searchEntry(String query) {
+    List<BookEntry> results = new ArrayList<>();
+
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+
+    byte[] needle = query.getBytes(StandardCharsets.UTF_8);
+    BitSet[] matching = new BitSet[dictionaries.length];
+    boolean any = false;
+    for (int field = 0; field < dictionaries.length; field++) {
+      matching[field] = dictionaries[field].codesContaining(needle);
+      any |= !matching[field].isEmpty();
+    }
+    if (!any) {
+      return results;
+    }
+
+    for (int row = 0; row < limit; row++) {
+      if (ids[row] == REMOVED) {
+        continue;
+      }
+      for (int field = 0; field < dictionaries.length; field++) {
+        int code = codes[field][row];
+        if (code != NULL_CODE && matching[field].get(code)) {
+          results.add(materialize(row));
+          break;
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Save the AddressBook to a JSON file.
+   *
+   * @param path the output path.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void saveToFile(String path) throws FileNotFoundException {
+    saveToFile(path, true);
+  }
+
+  /**
+   * Save the AddressBook to a JSON file, materializing one entry at a time.
+   *
+   * @param path the output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void saveToFile(String path, boolean prettyPrinting) throws FileNotFoundException {
+    try {
+      EntryJson.writeFile(path, prettyPrinting, this::entries);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Read the AddressBook from a JSON file, streaming one entry at a time. Entries read get new ids,
+   * as if they were added one by one. A file which is malformed or cut short throws
+   * JsonSyntaxException, and the entries it added are taken back.
+   *
+   * @param path the input path.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void readFromFile(String path) throws FileNotFoundException {
+    // Entries are added as they are read, rather than held on the heap until the end of the file,
+    // and taken back if the file turns out to be corrupt
+    int firstId = nextId;
+    boolean complete = false;
+    try {
+      // do not preserve the ids read
+      EntryJson.readFile(path, this::addEntry);
+      complete = true;
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      if (!complete) {
+        for (int id = firstId; id < nextId; id++) {
+          int row = rows.get(id);
+          if (row != IntIntHashMap.NO_VALUE) {
+            removeRow(row);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Override toString() for the AddressBook.
+   *
+   * @return the good-looking String format of the AddressBook.
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    Iterator<BookEntry> iterator = entries();
+    while (iterator.hasNext()) {
+      result.append(iterator.next()).append('\n');
+    }
+    return result.toString();
+  }
+
+  private void reset() {
+    codes = new int[dictionaries.length][INITIAL_CAPACITY];
+    ids = new int[INITIAL_CAPACITY];
+    limit = 0;
+    size = 0;
+    contentTable = new int[INITIAL_CAPACITY * 2];
+    Arrays.fill(contentTable, EMPTY);
+    contentTableUsed = 0;
+    nextId = 0;
+  }
+
+  /**
+   * Iterate over materialized copies of the entries, in book order.
+   */
+  private Iterator<BookEntry> entries() {
+    return new Iterator<BookEntry>() {
+      private int row = skipRemoved(0);
+
+      @Override
+      public boolean hasNext() {
+        return row < limit;
+      }
+
+      @Override
+      public BookEntry next() {
+        if (row >= limit) {
+          throw new NoSuchElementException();
+        }
+        BookEntry next = materialize(row);
+        row = skipRemoved(row + 1);
+        return next;
+      }
+    };
+  }
+
+  private int skipRemoved(int row) {
+    while (row < limit && ids[row] == REMOVED) {
+      row++;
+    }
+    return row;
+  }
+
+  private BookEntry materialize(int row) {
+    String[] values = new String[dictionaries.length];
+    for (int field = 0; field < dictionaries.length; field++) {
+      int code = codes[field][row];
+      values[field] = code == NULL_CODE ? null : dictionaries[field].decode(code);
+    }
+    return BookEntry.fromTrustedValues(ids[row], values);
+  }
+
+  private void removeRow(int row) {
+    removeContent(row);
+    for (int field = 0; field < dictionaries.length; field++) {
+      if (codes[field][row] != NULL_CODE) {
+        dictionaries[field].release(codes[field][row]);
+      }
+    }
+    rows.remove(ids[row]);
+    ids[row] = REMOVED;
+    size--;
+    // Squeeze the holes out once they make up most of the rows
+    if (size * 4 < limit && limit > INITIAL_CAPACITY) {
+      compact();
+    }
+  }
+
+  private void grow() {
+    if (size * 2 <= limit) {
+      compact();
+      if (limit < ids.length) {
+        return;
+      }
+    }
+    int capacity = ids.length * 2;
+    ids = Arrays.copyOf(ids, capacity);
+    for (int field = 0; field < codes.length; field++) {
+      codes[field] = Arrays.copyOf(codes[field], capacity);
+    }
+  }
+
+  private void compact() {
+    int live = 0;
+    for (int row = 0; row < limit; row++) {
+      if (ids[row] != REMOVED) {
+        ids[live] = ids[row];
+        for (int field = 0; field < codes.length; field++) {
+          codes[field][live] = codes[field][row];
+        }
+        rows.put(ids[live], live);
+        live++;
+      }
+    }
+    limit = live;
+    rebuildContentTable(contentTable.length);
+  }
+
+  /**
+   * Find the row holding the same content as an entry. Codes are unique per value, so two rows
+   * hold the same content exactly when they have the same codes.
+   *
+   * @return The row, or EMPTY if there is none.
+   */
+  private int findRow(BookEntry bookEntry) {
+    int[] wanted = new int[dictionaries.length];
+    for (EntryField field : EntryField.FIELDS) {
+      String value = field.valueOf(bookEntry);
+      if (value == null) {
+        wanted[field.ordinal()] = NULL_CODE;
+      } else {
+        int code = dictionaries[field.ordinal()].codeOf(value);
+        if (code < 0) {
+          // a value no entry has
+          return EMPTY;
+        }
+        wanted[field.ordinal()] = code;
+      }
+    }
+
+    int mask = contentTable.length - 1;
+    for (int slot = hash(wanted) & mask; contentTable[slot] != EMPTY; slot = (slot + 1) & mask) {
+      int row = contentTable[slot];
+      if (row != DELETED && hasCodes(row, wanted)) {
+        return row;
+      }
+    }
+    return EMPTY;
+  }
+
+  private boolean hasCodes(int row, int[] wanted) {
+    for (int field = 0; field < wanted.length; field++) {
+      if (codes[field][row] != wanted[field]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void insertContent(int row) {
+    int mask = contentTable.length - 1;
+    int slot = hashRow(row) & mask;
+    while (contentTable[slot] >= 0) {
+      slot = (slot + 1) & mask;
+    }
+    if (contentTable[slot] == EMPTY) {
+      contentTableUsed++;
+    }
+    contentTable[slot] = row;
+  }
+
+  private void removeContent(int row) {
+    int mask = contentTable.length - 1;
+    int slot = hashRow(row) & mask;
+    while (contentTable[slot] != row) {
+      slot = (slot + 1) & mask;
+    }
+    // leave a tombstone, since later rows of the probe run may have passed this slot
+    contentTable[slot] = DELETED;
+  }
+
+  /**
+   * Rebuild the content table from the live rows, dropping the tombstones.
+   */
+  private void rebuildContentTable(int capacity) {
+    contentTable = new int[capacity];
+    Arrays.fill(contentTable, EMPTY);
+    contentTableUsed = 0;
+    for (int row = 0; row < limit; row++) {
+      if (ids[row] != REMOVED) {
+        insertContent(row);
+      }
+    }
+  }
+
+  private int hashRow(int row) {
+    int hash = 1;
+    for (int field = 0; field < codes.length; field++) {
+      hash = 31 * hash + codes[field][row];
+    }
+    return spread(hash);
+  }
+
+  private static int hash(int[] rowCodes) {
+    return spread(Arrays.hashCode(rowCodes));
+  }
+
+  private static int spread(int hash) {
+    int spread = hash * 0x9E3779B9;
+    return spread ^ (spread >>> 16);
+  }
+}
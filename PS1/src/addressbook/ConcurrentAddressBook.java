@@ -0,0 +1,421 @@
+package addressbook;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A thread-safe address book with the same public API as AddressBook, built for many concurrent
+ * readers and rare writers. Readers never lock: they work on an immutable snapshot of the book,
+ * read from a volatile field. Writers are serialized and publish a new snapshot atomically after
+ * each change.
+ *
+ * <p>
+ * Snapshots store the entries in insertion order in fixed-size segments, so a change only copies
+ * the segment it touches and the segment directory, not the whole book. Appends do not even copy
+ * the segment: they write past the end older snapshots can see.
+ *
+ * @author Lei Guo
+ */
+public class ConcurrentAddressBook implements EntryBook {
+  private static final int SEGMENT_SHIFT = 10;
+  private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+  private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  private volatile Snapshot snapshot;
+
+  // Writer state, guarded by this
+  private final Set<EntryFingerprint> fingerprints;
+  private final IntIntHashMap positions;
+  private int nextId;
+
+  /**
+   * An immutable view of the book. Segments hold the entries, with null for removed ones, and the
+   * ids of the entries in the same layout, removed ones included. Ids increase with position.
+   */
+  private static final class Snapshot implements Iterable<BookEntry> {
+    private static final Snapshot EMPTY = new Snapshot(new BookEntry[0][], new int[0][], 0, 0);
+
+    private final BookEntry[][] segments;
+    private final int[][] ids;
+    private final int limit;
+    private final int size;
+
+    private Snapshot(BookEntry[][] segments, int[][] ids, int limit, int size) {
+      this.segments = segments;
+      this.ids = ids;
+      this.limit = limit;
+      this.size = size;
+    }
+
+    private BookEntry at(int position) {
+      return segments[position >>> SEGMENT_SHIFT][position & SEGMENT_MASK];
+    }
+
+    private int idAt(int position) {
+      return ids[position >>> SEGMENT_SHIFT][position & SEGMENT_MASK];
+    }
+
+    private BookEntry get(int id) {
+      int low = 0;
+      int high = limit - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int middleId = idAt(middle);
+        if (middleId < id) {
+          low = middle + 1;
+        } else if (middleId > id) {
+          high = middle - 1;
+        } else {
+          return at(middle);
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public Iterator<BookEntry> iterator() {
+      return new Iterator<BookEntry>() {
+        private int position = skipHoles(0);
+
+        @Override
+        public boolean hasNext() {
+          return position < limit;
+        }
+
+        @Override
+        public BookEntry next() {
+          if (position >= limit) {
+            throw new NoSuchElementException();
+          }
+          BookEntry next = at(position);
+          position = skipHoles(position + 1);
+          return next;
+        }
+      };
+    }
+
+    private int skipHoles(int position) {
+      while (position < limit && at(position) == null) {
+        position++;
+      }
+      return position;
+    }
+  }
+
+  /**
+   * Constructor for ConcurrentAddressBook
+   */
+  public ConcurrentAddressBook() {
+    this.snapshot = Snapshot.EMPTY;
+    this.fingerprints = new HashSet<>();
+    this.positions = new IntIntHashMap();
+    this.nextId = 0;
+  }
+
+  /**
+   * Add a new BookEntry to the AddressBook.
+   *
+   * @param bookEntry The book entry to be added.
+   * @return true if the book entry could be add to the address book successfully, false if an
+   *         entry with the same content is already in it.
+   */
+  @Override
+  public synchronized boolean addEntry(BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    } else if (!fingerprints.add(new EntryFingerprint(bookEntry))) {
+      return false;
+    } else {
+      bookEntry.setId(nextId);
+      nextId++;
+      snapshot = append(snapshot, bookEntry);
+      return true;
+    }
+  }
+
+  /**
+   * Remove an BookEntry (Object) from the AddressBook.
+   *
+   * @param bookEntry The book entry to be removed.
+   * @return true if the book entry could be removed successfully.
+   */
+  @Override
+  public synchronized boolean removeEntry(BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    BookEntry stored = snapshot.get(bookEntry.getId());
+    if (stored == null || !bookEntry.equals(stored)) {
+      return false;
+    }
+    remove(bookEntry.getId());
+    return true;
+  }
+
+  /**
+   * Remove an BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry to be removed.
+   * @return The book entry removed.
+   */
+  @Override
+  public synchronized BookEntry removeEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    BookEntry bookEntry = remove(id);
+    if (bookEntry == null) {
+      throw new NoSuchElementException("The contact want to be removed does not exist");
+    }
+    return bookEntry;
+  }
+
+  /**
+   * Get a BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry.
+   * @return The book entry with that id.
+   */
+  @Override
+  public BookEntry getEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    BookEntry bookEntry = snapshot.get(id);
+    if (bookEntry == null) {
+      throw new NoSuchElementException("The contact with this id does not exist");
+    }
+    return bookEntry;
+  }
+
+  /**
+   * Replace the BookEntry with the given id by a new one, which takes over its id and its place in
+   * the AddressBook.
+   *
+   * @param id The id of the book entry to be replaced.
+   * @param bookEntry The new book entry.
+   * @return The book entry replaced.
+   */
+  public synchronized BookEntry updateEntryById(int id, BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    int position = positions.get(id);
+    if (position == IntIntHashMap.NO_VALUE) {
+      throw new NoSuchElementException("The contact want to be updated does not exist");
+    }
+    BookEntry replaced = snapshot.at(position);
+    EntryFingerprint fingerprint = new EntryFingerprint(bookEntry);
+    if (!replaced.hasSameContent(bookEntry) && fingerprints.contains(fingerprint)) {
+      throw new IllegalArgumentException("An equal contact already exists");
+    }
+    fingerprints.remove(new EntryFingerprint(replaced));
+    fingerprints.add(fingerprint);
+    bookEntry.setId(id);
+    snapshot = set(snapshot, position, bookEntry, 0);
+    return replaced;
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of book entries in the AddressBook.
+   */
+  @Override
+  public int size() {
+    return snapshot.size;
+  }
+
+  /**
+   * Clear the AddressBook
+   */
+  @Override
+  public synchronized void clear() {
+    snapshot = Snapshot.EMPTY;
+    fingerprints.clear();
+    positions.clear();
+    nextId = 0;
+  }
+
+  /**
+   * Search for book entries which match the query string. The search runs on the snapshot current
+   * when it starts and does not block or wait for writers.
+   *
+   * @param query string to be queried.
+   * @return List of book entries which matches the query, in the order they were added.
+   */
+  @Override
+  public List<BookEntry> searchEntry(String query) {
+    List<BookEntry> results = new ArrayList<>();
+
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+
+    Snapshot current = snapshot;
+    for (int segment = 0; segment < current.segments.length; segment++) {
+      BookEntry[] entries = current.segments[segment];
+      int end = Math.min(SEGMENT_SIZE, current.limit - (segment << SEGMENT_SHIFT));
+      for (int i = 0; i < end; i++) {
+        BookEntry bookEntry = entries[i];
+        if (bookEntry != null && bookEntry.matches(query)) {
+          results.add(bookEntry);
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Save the AddressBook to a JSON file.
+   *
+   * @param path the output path.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void saveToFile(String path) throws FileNotFoundException {
+    saveToFile(path, true);
+  }
+
+  /**
+   * Save the AddressBook to a JSON file, streaming one entry at a time from the current snapshot
+   * while writers carry on.
+   *
+   * @param path the output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void saveToFile(String path, boolean prettyPrinting) throws FileNotFoundException {
+    try {
+      EntryJson.writeFile(path, prettyPrinting, snapshot);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Read the AddressBook from a JSON file. Entries read get new ids, as if they were added one by
+   * one, and are published together once the whole file is read: a file which is malformed or cut
+   * short adds nothing and throws JsonSyntaxException.
+   *
+   * @param path the input path.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void readFromFile(String path) throws FileNotFoundException {
+    List<BookEntry> read = new ArrayList<>();
+    try {
+      EntryJson.readFile(path, read::add);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+
+    synchronized (this) {
+      Snapshot next = snapshot;
+      for (BookEntry bookEntry : read) {
+        if (fingerprints.add(new EntryFingerprint(bookEntry))) {
+          bookEntry.setId(nextId);
+          nextId++;
+          next = append(next, bookEntry);
+        }
+      }
+      snapshot = next;
+    }
+  }
+
+  /**
+   * Getter for entries.
+   *
+   * @return The entries of the current snapshot in book order, which later changes to the
+   *         AddressBook do not affect.
+   */
+  Iterable<BookEntry> entries() {
+    return snapshot;
+  }
+
+  /**
+   * Override toString() for the AddressBook.
+   *
+   * @return the good-looking String format of the AddressBook.
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (BookEntry bookEntry : snapshot) {
+      result.append(bookEntry).append('\n');
+    }
+    return result.toString();
+  }
+
+  /**
+   * Build the snapshot with an entry appended. The entry is written in place past the limit of
+   * the current snapshot, where no reader looks.
+   */
+  private Snapshot append(Snapshot current, BookEntry bookEntry) {
+    int position = current.limit;
+    int segment = position >>> SEGMENT_SHIFT;
+    BookEntry[][] segments = current.segments;
+    int[][] ids = current.ids;
+    if (segment == segments.length) {
+      segments = Arrays.copyOf(segments, segment + 1);
+      ids = Arrays.copyOf(ids, segment + 1);
+      segments[segment] = new BookEntry[SEGMENT_SIZE];
+      ids[segment] = new int[SEGMENT_SIZE];
+    }
+    segments[segment][position & SEGMENT_MASK] = bookEntry;
+    ids[segment][position & SEGMENT_MASK] = bookEntry.getId();
+    positions.put(bookEntry.getId(), position);
+    return new Snapshot(segments, ids, position + 1, current.size + 1);
+  }
+
+  private BookEntry remove(int id) {
+    int position = positions.remove(id);
+    if (position == IntIntHashMap.NO_VALUE) {
+      return null;
+    }
+    BookEntry removed = snapshot.at(position);
+    fingerprints.remove(new EntryFingerprint(removed));
+    Snapshot next = set(snapshot, position, null, -1);
+    // Squeeze the holes out once they make up most of the book
+    if (next.size * 4 < next.limit && next.limit > SEGMENT_SIZE) {
+      next = compact(next);
+    }
+    snapshot = next;
+    return removed;
+  }
+
+  /**
+   * Build the snapshot with one position overwritten, copying only the segment holding it.
+   */
+  private static Snapshot set(Snapshot current, int position, BookEntry bookEntry, int sizeDelta) {
+    int segment = position >>> SEGMENT_SHIFT;
+    BookEntry[][] segments = current.segments.clone();
+    segments[segment] = segments[segment].clone();
+    segments[segment][position & SEGMENT_MASK] = bookEntry;
+    return new Snapshot(segments, current.ids, current.limit, current.size + sizeDelta);
+  }
+
+  private Snapshot compact(Snapshot current) {
+    positions.clear();
+    Snapshot next = Snapshot.EMPTY;
+    for (BookEntry bookEntry : current) {
+      next = append(next, bookEntry);
+    }
+    return next;
+  }
+}
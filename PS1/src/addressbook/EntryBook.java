@@ -0,0 +1,94 @@
+package addressbook;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+
+/**
+ * The core API of an address book, whichever way it stores its entries: AddressBook keeps
+ * BookEntry objects with search indexes, ConcurrentAddressBook shares them between threads, and
+ * CompactAddressBook and OffHeapAddressBook keep encoded values to hold large books in a small
+ * heap. Code written against EntryBook picks its storage by the constructor it calls.
+ *
+ * @author Lei Guo
+ */
+public interface EntryBook {
+  /**
+   * Add a new BookEntry to the AddressBook.
+   *
+   * @param bookEntry The book entry to be added.
+   * @return true if the book entry could be add to the address book successfully, false if an
+   *         entry with the same content is already in it.
+   */
+  boolean addEntry(BookEntry bookEntry);
+
+  /**
+   * Remove an BookEntry (Object) from the AddressBook.
+   *
+   * @param bookEntry The book entry to be removed.
+   * @return true if the book entry could be removed successfully.
+   */
+  boolean removeEntry(BookEntry bookEntry);
+
+  /**
+   * Remove an BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry to be removed.
+   * @return The book entry removed.
+   */
+  BookEntry removeEntryById(int id);
+
+  /**
+   * Get a BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry.
+   * @return The book entry with that id.
+   */
+  BookEntry getEntryById(int id);
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of book entries in the AddressBook.
+   */
+  int size();
+
+  /**
+   * Clear the AddressBook
+   */
+  void clear();
+
+  /**
+   * Search for book entries which match the query string.
+   *
+   * @param query string to be queried.
+   * @return List of book entries which matches the query, in the order they were added.
+   */
+  List<BookEntry> searchEntry(String query);
+
+  /**
+   * Save the AddressBook to a JSON file.
+   *
+   * @param path the output path.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  void saveToFile(String path) throws FileNotFoundException;
+
+  /**
+   * Save the AddressBook to a JSON file.
+   *
+   * @param path the output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  void saveToFile(String path, boolean prettyPrinting) throws FileNotFoundException;
+
+  /**
+   * Read the AddressBook from a JSON file. Entries read get new ids, as if they were added one by
+   * one. A file which is malformed or cut short throws JsonSyntaxException and leaves the book as
+   * it was.
+   *
+   * @param path the input path.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  void readFromFile(String path) throws FileNotFoundException;
+}
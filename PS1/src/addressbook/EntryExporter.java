@@ -0,0 +1,210 @@
+package addressbook;
+
+import java.io.IOException;
+import java.io.Writer;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes book entries one at a time in an ExportFormat. Nothing is kept between entries, so the
+ * memory used does not depend on the number of entries.
+ *
+ * @author Lei Guo
+ */
+final class EntryExporter {
+  private static final String CRLF = "\r\n";
+  private static final int VCARD_LINE_LENGTH = 75;
+
+  private EntryExporter() {}
+
+  /**
+   * Write book entries.
+   *
+   * @param entries The entries to be written.
+   * @param format The format to write them in.
+   * @param out The destination.
+   * @throws IOException if the destination fails.
+   */
+  static void export(Iterable<BookEntry> entries, ExportFormat format, Appendable out)
+      throws IOException {
+    switch (format) {
+      case CSV:
+        writeCsv(entries, out);
+        break;
+      case VCARD:
+        for (BookEntry bookEntry : entries) {
+          writeVCard(bookEntry, out);
+        }
+        break;
+      case NDJSON:
+        writeNdjson(entries, out);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown export format " + format);
+    }
+  }
+
+  private static void writeCsv(Iterable<BookEntry> entries, Appendable out) throws IOException {
+    out.append("id");
+    for (EntryField field : EntryField.FIELDS) {
+      out.append(',').append(field.attributeName());
+    }
+    out.append(CRLF);
+    for (BookEntry bookEntry : entries) {
+      out.append(Integer.toString(bookEntry.getId()));
+      for (EntryField field : EntryField.FIELDS) {
+        out.append(',');
+        String value = field.valueOf(bookEntry);
+        if (value != null) {
+          appendCsvValue(value, out);
+        }
+      }
+      out.append(CRLF);
+    }
+  }
+
+  private static void appendCsvValue(String value, Appendable out) throws IOException {
+    boolean quoted = false;
+    for (int i = 0; i < value.length() && !quoted; i++) {
+      char c = value.charAt(i);
+      quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+    }
+    if (!quoted) {
+      out.append(value);
+      return;
+    }
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        out.append('"');
+      }
+      out.append(c);
+    }
+    out.append('"');
+  }
+
+  private static void writeVCard(BookEntry bookEntry, Appendable out) throws IOException {
+    out.append("BEGIN:VCARD").append(CRLF);
+    out.append("VERSION:3.0").append(CRLF);
+    appendVCardLine("FN", bookEntry.getName(), out);
+    // N is required; split the name at its last space into given and family names
+    String name = bookEntry.getName().trim();
+    int space = name.lastIndexOf(' ');
+    out.append("N:");
+    appendVCardText(space < 0 ? name : name.substring(space + 1), out);
+    out.append(';');
+    appendVCardText(space < 0 ? "" : name.substring(0, space), out);
+    out.append(";;;").append(CRLF);
+    if (bookEntry.getPhoneNumber() != null) {
+      appendVCardLine("TEL", bookEntry.getPhoneNumber(), out);
+    }
+    if (bookEntry.getEmailAddress() != null) {
+      appendVCardLine("EMAIL;TYPE=INTERNET", bookEntry.getEmailAddress(), out);
+    }
+    if (bookEntry.getPostalAddress() != null) {
+      // the whole address goes in the street component
+      appendVCardLine("ADR", ";;" + escapeVCardText(bookEntry.getPostalAddress()) + ";;;;", false,
+          out);
+    }
+    if (bookEntry.getNote() != null) {
+      appendVCardLine("NOTE", bookEntry.getNote(), out);
+    }
+    appendVCardLine("UID", Integer.toString(bookEntry.getId()), out);
+    out.append("END:VCARD").append(CRLF);
+  }
+
+  private static void appendVCardLine(String name, String value, Appendable out)
+      throws IOException {
+    appendVCardLine(name, value, true, out);
+  }
+
+  /**
+   * Write a content line, folding it into lines of at most VCARD_LINE_LENGTH characters; the
+   * continuation lines start with a space.
+   */
+  private static void appendVCardLine(String name, String value, boolean escape, Appendable out)
+      throws IOException {
+    String line = name + ':' + (escape ? escapeVCardText(value) : value);
+    int start = 0;
+    int length = VCARD_LINE_LENGTH;
+    while (line.length() - start > length) {
+      int end = start + length;
+      // do not split a surrogate pair
+      if (Character.isHighSurrogate(line.charAt(end - 1))) {
+        end--;
+      }
+      out.append(line, start, end).append(CRLF).append(' ');
+      start = end;
+      length = VCARD_LINE_LENGTH - 1;
+    }
+    out.append(line, start, line.length()).append(CRLF);
+  }
+
+  private static void appendVCardText(String value, Appendable out) throws IOException {
+    out.append(escapeVCardText(value));
+  }
+
+  private static String escapeVCardText(String value) {
+    StringBuilder escaped = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' || c == ',' || c == ';') {
+        escaped.append('\\').append(c);
+      } else if (c == '\n') {
+        escaped.append("\\n");
+      } else if (c != '\r') {
+        escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  private static void writeNdjson(Iterable<BookEntry> entries, Appendable out)
+      throws IOException {
+    Writer writer = out instanceof Writer ? (Writer) out : new AppendableWriter(out);
+    JsonWriter json = new JsonWriter(writer);
+    // lenient, to write one top-level value per line
+    json.setLenient(true);
+    json.setSerializeNulls(false);
+    for (BookEntry bookEntry : entries) {
+      EntryJson.write(json, bookEntry);
+      // JsonWriter does not buffer, so the newline lands right after the object
+      writer.write('\n');
+    }
+    json.flush();
+  }
+
+  /**
+   * A Writer handing everything to an Appendable.
+   */
+  private static final class AppendableWriter extends Writer {
+    private final Appendable out;
+
+    private AppendableWriter(Appendable out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      for (int i = offset; i < offset + length; i++) {
+        out.append(buffer[i]);
+      }
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+      out.append(string, offset, offset + length);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      out.append((char) c);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
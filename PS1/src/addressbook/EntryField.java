@@ -0,0 +1,93 @@
+package addressbook;
+
+/**
+ * The searchable fields of a BookEntry, in the order they are stored and serialized.
+ *
+ * @author Lei Guo
+ */
+enum EntryField {
+  NAME("name", "name"), PHONE_NUMBER("phoneNumber", "phone"),
+  EMAIL_ADDRESS("emailAddress", "email"), POSTAL_ADDRESS("postalAddress", "address"),
+  NOTE("note", "note");
+
+  /** Every field in declaration order, shared to spare the copy values() makes on each call. */
+  static final EntryField[] FIELDS = values();
+
+  private final String attributeName;
+  private final String queryName;
+
+  private EntryField(String attributeName, String queryName) {
+    this.attributeName = attributeName;
+    this.queryName = queryName;
+  }
+
+  /**
+   * Getter for attribute name.
+   *
+   * @return The name of the BookEntry attribute, as used in saved files.
+   */
+  String attributeName() {
+    return attributeName;
+  }
+
+  /**
+   * Getter for query name.
+   *
+   * @return The short name of the field in field-scoped queries.
+   */
+  String queryName() {
+    return queryName;
+  }
+
+  /**
+   * Look up a field by the name a query gives it, either its query name or its attribute name,
+   * ignoring case.
+   *
+   * @param name The name of the field in the query.
+   * @return The field, or null if no field has that name.
+   */
+  static EntryField forQueryName(String name) {
+    for (EntryField field : FIELDS) {
+      if (field.queryName.equalsIgnoreCase(name) || field.attributeName.equalsIgnoreCase(name)) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Look up a field by its attribute name.
+   *
+   * @param attributeName The name of the BookEntry attribute.
+   * @return The field, or null if no field has that name.
+   */
+  static EntryField forAttributeName(String attributeName) {
+    for (EntryField field : FIELDS) {
+      if (field.attributeName.equals(attributeName)) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Read this field from a book entry.
+   *
+   * @param bookEntry The book entry to read from.
+   * @return The value of this field, or null if the entry does not have it.
+   */
+  String valueOf(BookEntry bookEntry) {
+    switch (this) {
+      case NAME:
+        return bookEntry.getName();
+      case PHONE_NUMBER:
+        return bookEntry.getPhoneNumber();
+      case EMAIL_ADDRESS:
+        return bookEntry.getEmailAddress();
+      case POSTAL_ADDRESS:
+        return bookEntry.getPostalAddress();
+      default:
+        return bookEntry.getNote();
+    }
+  }
+}
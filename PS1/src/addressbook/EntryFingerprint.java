@@ -0,0 +1,50 @@
+package addressbook;
+
+/**
+ * A hash set key standing for the content of a BookEntry, so that two entries with the same
+ * values but different ids map to the same key.
+ *
+ * @author Lei Guo
+ */
+final class EntryFingerprint {
+  private final BookEntry bookEntry;
+  private final int hash;
+
+  /**
+   * Constructor for EntryFingerprint.
+   *
+   * @param bookEntry The entry whose content the fingerprint stands for.
+   */
+  EntryFingerprint(BookEntry bookEntry) {
+    this.bookEntry = bookEntry;
+    this.hash = bookEntry.contentHashCode();
+  }
+
+  /**
+   * Override the hashCode function.
+   *
+   * @return The content hash of the entry.
+   */
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  /**
+   * Override the equals function.
+   *
+   * @param o The other object to compared with.
+   * @return true if both fingerprints stand for the same content.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof EntryFingerprint)) {
+      return false;
+    }
+    EntryFingerprint fingerprint = (EntryFingerprint) o;
+    return hash == fingerprint.hash && bookEntry.hasSameContent(fingerprint.bookEntry);
+  }
+}
@@ -0,0 +1,262 @@
+package addressbook;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Writes and reads single book entries as JSON objects on Gson's streaming API, with the same
+ * layout the reflective Gson serializer produces, so a whole book never has to be held as a tree
+ * or an intermediate list.
+ *
+ * @author Lei Guo
+ */
+final class EntryJson {
+  private static final String ID = "id";
+  private static final int IO_BUFFER_SIZE = 1 << 16;
+  // The first two bytes of every GZIP file
+  private static final byte GZIP_MAGIC_0 = (byte) 0x1f;
+  private static final byte GZIP_MAGIC_1 = (byte) 0x8b;
+
+  /**
+   * Writes the elements of a JSON array.
+   */
+  private interface ArrayBody {
+    void write(JsonWriter writer) throws IOException;
+  }
+
+  private EntryJson() {}
+
+  /**
+   * Write a book entry as a JSON object. Absent optional attributes are left out, as long as the
+   * writer does not serialize nulls.
+   *
+   * @param writer The writer to write to.
+   * @param bookEntry The entry to be written.
+   * @throws IOException if the writer fails.
+   */
+  static void write(JsonWriter writer, BookEntry bookEntry) throws IOException {
+    write(writer, bookEntry, bookEntry.getId());
+  }
+
+  /**
+   * Write a book entry as a JSON object under a given id, such as the id it had when a snapshot of
+   * the book was taken.
+   *
+   * @param writer The writer to write to.
+   * @param bookEntry The entry to be written.
+   * @param id The id to be written.
+   * @throws IOException if the writer fails.
+   */
+  static void write(JsonWriter writer, BookEntry bookEntry, int id) throws IOException {
+    writer.beginObject();
+    for (EntryField field : EntryField.FIELDS) {
+      writer.name(field.attributeName()).value(field.valueOf(bookEntry));
+    }
+    writer.name(ID).value(id);
+    writer.endObject();
+  }
+
+  /**
+   * Read a book entry from a JSON object. The attributes are validated through BookEntry.Builder;
+   * the id is carried over if present and unknown attributes are skipped.
+   *
+   * @param reader The reader positioned before the object.
+   * @return The entry read.
+   * @throws IOException if the reader fails or the JSON is malformed.
+   */
+  static BookEntry read(JsonReader reader) throws IOException {
+    String[] values = new String[EntryField.FIELDS.length];
+    int id = -1;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      EntryField field = EntryField.forAttributeName(name);
+      if (reader.peek() == JsonToken.NULL) {
+        reader.nextNull();
+      } else if (field != null) {
+        values[field.ordinal()] = reader.nextString();
+      } else if (ID.equals(name)) {
+        id = reader.nextInt();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    BookEntry bookEntry = new BookEntry.Builder(values[EntryField.NAME.ordinal()])
+        .phoneNumber(values[EntryField.PHONE_NUMBER.ordinal()])
+        .emailAddress(values[EntryField.EMAIL_ADDRESS.ordinal()])
+        .postalAddress(values[EntryField.POSTAL_ADDRESS.ordinal()])
+        .note(values[EntryField.NOTE.ordinal()]).build();
+    bookEntry.setId(id);
+    return bookEntry;
+  }
+
+  /**
+   * Write book entries to a file as a JSON array, one entry at a time.
+   *
+   * @param path The output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @param entries The entries to be written.
+   * @return The size of the file written, in bytes.
+   * @throws IOException if the file cannot be written.
+   */
+  static long writeFile(String path, boolean prettyPrinting, Iterable<BookEntry> entries)
+      throws IOException {
+    return writeFile(path, prettyPrinting, false, writer -> {
+      for (BookEntry bookEntry : entries) {
+        write(writer, bookEntry);
+      }
+    });
+  }
+
+  /**
+   * Write book entries to a file as a JSON array under the ids they were captured with, one entry
+   * at a time, and force the file to the storage device.
+   *
+   * @param path The output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @param entries The entries to be written.
+   * @param ids The ids of the entries, in the same order.
+   * @return The size of the file written, in bytes.
+   * @throws IOException if the file cannot be written.
+   */
+  static long writeFile(String path, boolean prettyPrinting, BookEntry[] entries, int[] ids)
+      throws IOException {
+    return writeFile(path, prettyPrinting, true, writer -> {
+      for (int i = 0; i < entries.length; i++) {
+        write(writer, entries[i], ids[i]);
+      }
+    });
+  }
+
+  /**
+   * Write book entries to a GZIP-compressed file as a JSON array, one entry at a time, streaming
+   * through the compressor.
+   *
+   * @param path The output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @param compressionLevel The Deflater level, from 0 to 9, or -1 for the default level.
+   * @param entries The entries to be written.
+   * @return The size of the file written, in bytes.
+   * @throws IOException if the file cannot be written.
+   */
+  static long writeCompressedFile(String path, boolean prettyPrinting, int compressionLevel,
+      Iterable<BookEntry> entries) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      GZIPOutputStream compressed =
+          new GZIPOutputStream(Channels.newOutputStream(channel), IO_BUFFER_SIZE) {
+            {
+              def.setLevel(compressionLevel);
+            }
+          };
+      try (JsonWriter writer = new JsonWriter(new BufferedWriter(
+          new OutputStreamWriter(compressed, StandardCharsets.UTF_8), IO_BUFFER_SIZE))) {
+        writeArray(writer, prettyPrinting, body -> {
+          for (BookEntry bookEntry : entries) {
+            write(body, bookEntry);
+          }
+        });
+        compressed.finish();
+        return channel.size();
+      }
+    }
+  }
+
+  /**
+   * Read book entries from a file holding a JSON array, one entry at a time.
+   *
+   * @param path The input path.
+   * @param sink Receives every entry read, in file order.
+   * @return The size of the file read, in bytes.
+   * @throws IOException if the file cannot be read.
+   * @throws JsonSyntaxException if the file is not a well-formed, complete JSON array of entries.
+   *         The sink may have received the entries before the error.
+   */
+  static long readFile(String path, Consumer<BookEntry> sink) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        JsonReader reader = new JsonReader(new BufferedReader(
+            isCompressed(channel)
+                ? new InputStreamReader(
+                    new GZIPInputStream(Channels.newInputStream(channel), IO_BUFFER_SIZE),
+                    StandardCharsets.UTF_8)
+                : Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), IO_BUFFER_SIZE),
+            IO_BUFFER_SIZE))) {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        sink.accept(read(reader));
+      }
+      reader.endArray();
+      return channel.size();
+    } catch (MalformedJsonException | EOFException | CharacterCodingException | ZipException
+        | IllegalStateException | NumberFormatException e) {
+      // unchecked, as Gson.fromJson reports a malformed document
+      throw new JsonSyntaxException("Address book file is malformed: " + path, e);
+    }
+  }
+
+  private static long writeFile(String path, boolean prettyPrinting, boolean force,
+      ArrayBody body) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        JsonWriter writer = new JsonWriter(new BufferedWriter(
+            Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), IO_BUFFER_SIZE),
+            IO_BUFFER_SIZE))) {
+      writeArray(writer, prettyPrinting, body);
+      if (force) {
+        channel.force(true);
+      }
+      return channel.size();
+    }
+  }
+
+  /**
+   * Write a JSON array and flush the writer.
+   */
+  private static void writeArray(JsonWriter writer, boolean prettyPrinting, ArrayBody body)
+      throws IOException {
+    if (prettyPrinting) {
+      writer.setIndent("  ");
+    }
+    writer.setSerializeNulls(false);
+    writer.beginArray();
+    body.write(writer);
+    writer.endArray();
+    writer.flush();
+  }
+
+  /**
+   * Determine if a file starts with the GZIP magic number, leaving the channel at its start. JSON
+   * text cannot start with these bytes.
+   */
+  private static boolean isCompressed(FileChannel channel) throws IOException {
+    ByteBuffer magic = ByteBuffer.allocate(2);
+    while (magic.hasRemaining() && channel.read(magic) >= 0) {
+      // read until both bytes are in or the file ends
+    }
+    channel.position(0);
+    return magic.position() == 2 && magic.get(0) == GZIP_MAGIC_0 && magic.get(1) == GZIP_MAGIC_1;
+  }
+}
@@ -0,0 +1,211 @@
+package addressbook;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The entries of an address book, kept in insertion order in a dense array and keyed by id through
+ * a primitive hash map. Removing an entry leaves a hole in the dense array instead of shifting the
+ * rest down; holes are squeezed out in one pass once they make up most of the array, so get, remove
+ * and replace by id are all constant time (amortized for compaction).
+ *
+ * <p>
+ * Ids are handed out in increasing order, so they also increase with position. The ids of removed
+ * entries stay in place until compaction, which lets a scan resume after a given id.
+ *
+ * @author Lei Guo
+ */
+final class EntryStore implements Iterable<BookEntry> {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private BookEntry[] entries;
+  private int[] ids;
+  private int limit;
+  private int size;
+  private final IntIntHashMap positions;
+
+  /**
+   * Constructor for EntryStore.
+   */
+  EntryStore() {
+    this.entries = new BookEntry[INITIAL_CAPACITY];
+    this.ids = new int[INITIAL_CAPACITY];
+    this.limit = 0;
+    this.size = 0;
+    this.positions = new IntIntHashMap();
+  }
+
+  /**
+   * Append an entry whose id is already set.
+   *
+   * @param bookEntry The entry to be added.
+   */
+  void add(BookEntry bookEntry) {
+    if (limit == entries.length) {
+      if (size * 2 <= limit) {
+        compact();
+      } else {
+        entries = Arrays.copyOf(entries, entries.length * 2);
+        ids = Arrays.copyOf(ids, ids.length * 2);
+      }
+    }
+    positions.put(bookEntry.getId(), limit);
+    ids[limit] = bookEntry.getId();
+    entries[limit++] = bookEntry;
+    size++;
+  }
+
+  /**
+   * Look up an entry by id.
+   *
+   * @param id The id of the entry.
+   * @return The entry, or null if there is no entry with that id.
+   */
+  BookEntry get(int id) {
+    int position = positions.get(id);
+    return position == IntIntHashMap.NO_VALUE ? null : entries[position];
+  }
+
+  /**
+   * Remove an entry by id.
+   *
+   * @param id The id of the entry.
+   * @return The entry removed, or null if there is no entry with that id.
+   */
+  BookEntry remove(int id) {
+    int position = positions.remove(id);
+    if (position == IntIntHashMap.NO_VALUE) {
+      return null;
+    }
+    BookEntry removed = entries[position];
+    entries[position] = null;
+    size--;
+    if (size == 0) {
+      limit = 0;
+    } else if (size * 4 < limit && limit > INITIAL_CAPACITY) {
+      compact();
+    }
+    return removed;
+  }
+
+  /**
+   * Put a new entry in the place of the entry with the same id, keeping its position.
+   *
+   * @param bookEntry The new entry, whose id is already set.
+   * @return The entry replaced, or null if there is no entry with that id.
+   */
+  BookEntry replace(BookEntry bookEntry) {
+    int position = positions.get(bookEntry.getId());
+    if (position == IntIntHashMap.NO_VALUE) {
+      return null;
+    }
+    BookEntry replaced = entries[position];
+    entries[position] = bookEntry;
+    return replaced;
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of entries in the store.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Getter for limit. Positions from 0 up to the limit may hold entries or holes.
+   *
+   * @return The number of used positions in the dense array.
+   */
+  int limit() {
+    return limit;
+  }
+
+  /**
+   * Read the dense array at a position.
+   *
+   * @param position A position less than limit().
+   * @return The entry at that position, or null if the position is a hole.
+   */
+  BookEntry at(int position) {
+    return entries[position];
+  }
+
+  /**
+   * Find where a scan should resume to see only the entries with a greater id.
+   *
+   * @param id The id to resume after.
+   * @return The first position whose id is greater than the given one, or limit() if none is.
+   */
+  int firstPositionAfter(int id) {
+    if (id == Integer.MAX_VALUE) {
+      return limit;
+    }
+    int position = Arrays.binarySearch(ids, 0, limit, id + 1);
+    return position >= 0 ? position : -position - 1;
+  }
+
+  /**
+   * Remove every entry from the store.
+   */
+  void clear() {
+    entries = new BookEntry[INITIAL_CAPACITY];
+    ids = new int[INITIAL_CAPACITY];
+    limit = 0;
+    size = 0;
+    positions.clear();
+  }
+
+  /**
+   * Iterate the entries in insertion order.
+   *
+   * @return The iterator over the entries.
+   */
+  @Override
+  public Iterator<BookEntry> iterator() {
+    return new Iterator<BookEntry>() {
+      private int position = skipHoles(0);
+
+      @Override
+      public boolean hasNext() {
+        return position < limit;
+      }
+
+      @Override
+      public BookEntry next() {
+        if (position >= limit) {
+          throw new NoSuchElementException();
+        }
+        BookEntry next = entries[position];
+        position = skipHoles(position + 1);
+        return next;
+      }
+    };
+  }
+
+  private int skipHoles(int position) {
+    while (position < limit && entries[position] == null) {
+      position++;
+    }
+    return position;
+  }
+
+  private void compact() {
+    int to = 0;
+    for (int from = 0; from < limit; from++) {
+      BookEntry bookEntry = entries[from];
+      if (bookEntry != null) {
+        if (to != from) {
+          entries[to] = bookEntry;
+          ids[to] = ids[from];
+          positions.put(bookEntry.getId(), to);
+        }
+        to++;
+      }
+    }
+    Arrays.fill(entries, to, limit, null);
+    limit = to;
+  }
+}
@@ -0,0 +1,22 @@
+package addressbook;
+
+/**
+ * The formats AddressBook.export writes.
+ *
+ * @author Lei Guo
+ */
+public enum ExportFormat {
+  /**
+   * Comma-separated values as of RFC 4180: a header line, then one line per entry with the id and
+   * the attributes, quoted where needed. Missing attributes are empty. Lines end with CRLF.
+   */
+  CSV,
+  /**
+   * One vCard 3.0 (RFC 2426) per entry, with the id as UID and long lines folded.
+   */
+  VCARD,
+  /**
+   * Newline-delimited JSON: one JSON object per line, laid out as in the files of saveToFile.
+   */
+  NDJSON
+}
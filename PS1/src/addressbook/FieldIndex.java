@@ -0,0 +1,91 @@
+package addressbook;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An index from the exact value of each field to the ids of the entries holding that value.
+ *
+ * @author Lei Guo
+ */
+final class FieldIndex {
+  private static final int[] NO_IDS = new int[0];
+
+  private final Map<EntryField, Map<String, PostingList>> postings;
+
+  /**
+   * Constructor for FieldIndex.
+   */
+  FieldIndex() {
+    this.postings = new EnumMap<>(EntryField.class);
+    for (EntryField field : EntryField.FIELDS) {
+      postings.put(field, new HashMap<>());
+    }
+  }
+
+  /**
+   * Index every field of an entry.
+   *
+   * @param bookEntry The entry to be indexed, whose id is already set.
+   */
+  void add(BookEntry bookEntry) {
+    for (EntryField field : EntryField.FIELDS) {
+      String value = field.valueOf(bookEntry);
+      if (value != null) {
+        postings.get(field).computeIfAbsent(value, key -> new PostingList()).add(bookEntry.getId());
+      }
+    }
+  }
+
+  /**
+   * Remove every field of an entry from the index.
+   *
+   * @param bookEntry The entry to be removed.
+   */
+  void remove(BookEntry bookEntry) {
+    for (EntryField field : EntryField.FIELDS) {
+      String value = field.valueOf(bookEntry);
+      if (value != null) {
+        Map<String, PostingList> values = postings.get(field);
+        PostingList list = values.get(value);
+        if (list != null && list.remove(bookEntry.getId()) && list.isEmpty()) {
+          values.remove(value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Clear the index.
+   */
+  void clear() {
+    for (Map<String, PostingList> values : postings.values()) {
+      values.clear();
+    }
+  }
+
+  /**
+   * Count the entries holding a value in a field.
+   *
+   * @param field The field.
+   * @param value The exact value.
+   * @return The number of entries holding the value.
+   */
+  int count(EntryField field, String value) {
+    PostingList list = postings.get(field).get(value);
+    return list == null ? 0 : list.size();
+  }
+
+  /**
+   * Find the entries holding a value in a field.
+   *
+   * @param field The field.
+   * @param value The exact value.
+   * @return The ids of the entries holding the value, in increasing order.
+   */
+  int[] ids(EntryField field, String value) {
+    PostingList list = postings.get(field).get(value);
+    return list == null ? NO_IDS : list.toArray();
+  }
+}
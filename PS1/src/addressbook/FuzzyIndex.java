@@ -0,0 +1,207 @@
+package addressbook;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A typo-tolerant index over the names and email addresses of entries. The lower-cased terms (the
+ * whole name, each word of it and the whole email address) are kept in a BK-tree, a tree whose
+ * edges are labeled with edit distances. By the triangle inequality, the terms within distance k
+ * of a query can only sit below edges labeled between d - k and d + k, where d is the distance
+ * from the query to the node, so a lookup visits a small part of the dictionary.
+ *
+ * <p>
+ * BK-trees cannot delete, so a term whose last entry is removed stays in the tree as a dead node
+ * and is skipped by lookups; the tree is rebuilt once dead nodes outnumber live terms.
+ *
+ * @author Lei Guo
+ */
+final class FuzzyIndex {
+  private final Map<String, PostingList> dictionary;
+  private Node root;
+  private int nodeCount;
+
+  /**
+   * A term of the BK-tree with its children, keyed by their distance to the term.
+   */
+  private static final class Node {
+    private final String term;
+    private int[] distances = new int[0];
+    private Node[] children = new Node[0];
+
+    private Node(String term) {
+      this.term = term;
+    }
+
+    private Node child(int distance) {
+      for (int i = 0; i < distances.length; i++) {
+        if (distances[i] == distance) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    private void addChild(int distance, Node child) {
+      distances = Arrays.copyOf(distances, distances.length + 1);
+      children = Arrays.copyOf(children, children.length + 1);
+      distances[distances.length - 1] = distance;
+      children[children.length - 1] = child;
+    }
+  }
+
+  /**
+   * Constructor for FuzzyIndex.
+   */
+  FuzzyIndex() {
+    this.dictionary = new HashMap<>();
+    this.root = null;
+    this.nodeCount = 0;
+  }
+
+  /**
+   * Index the terms of an entry.
+   *
+   * @param bookEntry The entry to be indexed, whose id is already set.
+   */
+  void add(BookEntry bookEntry) {
+    for (String term : terms(bookEntry)) {
+      PostingList list = dictionary.get(term);
+      if (list == null) {
+        list = new PostingList();
+        dictionary.put(term, list);
+        insert(term);
+      }
+      list.add(bookEntry.getId());
+    }
+  }
+
+  /**
+   * Remove the terms of an entry from the index.
+   *
+   * @param bookEntry The entry to be removed.
+   */
+  void remove(BookEntry bookEntry) {
+    for (String term : terms(bookEntry)) {
+      PostingList list = dictionary.get(term);
+      if (list != null && list.remove(bookEntry.getId()) && list.isEmpty()) {
+        dictionary.remove(term);
+      }
+    }
+    if (nodeCount > 2 * dictionary.size() + 16) {
+      rebuild();
+    }
+  }
+
+  /**
+   * Find the entries with a term within an edit distance of the query.
+   *
+   * @param query The query, compared without regard to case.
+   * @param maxDistance The largest edit distance allowed.
+   * @return The ids of the matching entries, each with its smallest distance to the query.
+   */
+  Map<Integer, Integer> search(String query, int maxDistance) {
+    Map<Integer, Integer> distances = new HashMap<>();
+    if (root == null) {
+      return distances;
+    }
+    String folded = query.toLowerCase(Locale.ROOT);
+
+    Deque<Node> pending = new ArrayDeque<>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      Node node = pending.pop();
+      int distance = editDistance(folded, node.term);
+      if (distance <= maxDistance) {
+        PostingList list = dictionary.get(node.term);
+        if (list != null) {
+          for (int id : list.toArray()) {
+            distances.merge(id, distance, Math::min);
+          }
+        }
+      }
+      for (int i = 0; i < node.distances.length; i++) {
+        if (Math.abs(node.distances[i] - distance) <= maxDistance) {
+          pending.push(node.children[i]);
+        }
+      }
+    }
+    return distances;
+  }
+
+  private void insert(String term) {
+    if (root == null) {
+      root = new Node(term);
+      nodeCount = 1;
+      return;
+    }
+    Node node = root;
+    while (true) {
+      int distance = editDistance(term, node.term);
+      if (distance == 0) {
+        // a dead node coming back to life
+        return;
+      }
+      Node child = node.child(distance);
+      if (child == null) {
+        node.addChild(distance, new Node(term));
+        nodeCount++;
+        return;
+      }
+      node = child;
+    }
+  }
+
+  private void rebuild() {
+    root = null;
+    nodeCount = 0;
+    for (String term : dictionary.keySet()) {
+      insert(term);
+    }
+  }
+
+  private static Set<String> terms(BookEntry bookEntry) {
+    Set<String> terms = new LinkedHashSet<>();
+    String name = bookEntry.getName().toLowerCase(Locale.ROOT).trim();
+    if (!name.isEmpty()) {
+      terms.add(name);
+      for (String word : name.split("\\s+")) {
+        terms.add(word);
+      }
+    }
+    if (bookEntry.getEmailAddress() != null) {
+      terms.add(bookEntry.getEmailAddress().toLowerCase(Locale.ROOT));
+    }
+    return terms;
+  }
+
+  /**
+   * Compute the Levenshtein distance between two strings with two rows of the dynamic programming
+   * table.
+   */
+  static int editDistance(String a, String b) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      char c = a.charAt(i - 1);
+      for (int j = 1; j <= b.length(); j++) {
+        int substitution = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()];
+  }
+}
@@ -0,0 +1,127 @@
+package addressbook;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of AddressBook.importRecords: how many records were added, and why each of the
+ * others was not.
+ *
+ * @author Lei Guo
+ */
+public class ImportReport {
+  private final int recordCount;
+  private final int addedCount;
+  private final int duplicateCount;
+  private final List<RecordError> errors;
+
+  /**
+   * A record which was not added, with the reason.
+   */
+  public static class RecordError {
+    private final int index;
+    private final String message;
+
+    /**
+     * Constructor for RecordError.
+     *
+     * @param index The index of the record in the imported list.
+     * @param message The reason the record was not added.
+     */
+    RecordError(int index, String message) {
+      this.index = index;
+      this.message = message;
+    }
+
+    /**
+     * Getter for index.
+     *
+     * @return The index of the record in the imported list.
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * Getter for message.
+     *
+     * @return The reason the record was not added.
+     */
+    public String getMessage() {
+      return message;
+    }
+
+    /**
+     * Override toString() for the RecordError.
+     *
+     * @return The index and the reason.
+     */
+    @Override
+    public String toString() {
+      return "record " + index + ": " + message;
+    }
+  }
+
+  /**
+   * Constructor for ImportReport.
+   *
+   * @param recordCount The number of records imported.
+   * @param addedCount The number of records added to the book.
+   * @param duplicateCount The number of valid records already in the book or earlier in the list.
+   * @param errors The records not added, in list order.
+   */
+  ImportReport(int recordCount, int addedCount, int duplicateCount, List<RecordError> errors) {
+    this.recordCount = recordCount;
+    this.addedCount = addedCount;
+    this.duplicateCount = duplicateCount;
+    this.errors = Collections.unmodifiableList(errors);
+  }
+
+  /**
+   * Getter for recordCount.
+   *
+   * @return The number of records imported.
+   */
+  public int getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Getter for addedCount.
+   *
+   * @return The number of records added to the book.
+   */
+  public int getAddedCount() {
+    return addedCount;
+  }
+
+  /**
+   * Getter for duplicateCount.
+   *
+   * @return The number of valid records skipped because the same content was already in the book
+   *         or earlier in the list.
+   */
+  public int getDuplicateCount() {
+    return duplicateCount;
+  }
+
+  /**
+   * Getter for errors.
+   *
+   * @return The records not added, invalid ones and duplicates, in list order.
+   */
+  public List<RecordError> getErrors() {
+    return errors;
+  }
+
+  /**
+   * Override toString() for the ImportReport.
+   *
+   * @return The counts of the import.
+   */
+  @Override
+  public String toString() {
+    return "ImportReport: records=" + recordCount + " added=" + addedCount + " duplicates="
+        + duplicateCount + " invalid=" + (errors.size() - duplicateCount);
+  }
+}
@@ -0,0 +1,88 @@
+package addressbook;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork/join task building the entries of a range of imported records through BookEntry.Builder,
+ * along with their fingerprints. A record which fails validation leaves a null entry and the
+ * message of the failure at its index. Ranges are split in halves until they are small; every task
+ * writes its own slots, so the results do not depend on how the work was split.
+ *
+ * @author Lei Guo
+ */
+final class ImportValidation extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  /** Ranges at most this long are validated by a single task. */
+  static final int LEAF_SIZE = 1024;
+
+  private final List<String[]> records;
+  private final BookEntry[] built;
+  private final EntryFingerprint[] fingerprints;
+  private final String[] errors;
+  private final int from;
+  private final int to;
+
+  /**
+   * Constructor for ImportValidation.
+   *
+   * @param records The records, each holding the attributes in EntryField order.
+   * @param built Receives the entry of each valid record.
+   * @param fingerprints Receives the fingerprint of each valid record.
+   * @param errors Receives the failure of each invalid record.
+   * @param from The start of the range, inclusive.
+   * @param to The end of the range, exclusive.
+   */
+  ImportValidation(List<String[]> records, BookEntry[] built, EntryFingerprint[] fingerprints,
+      String[] errors, int from, int to) {
+    this.records = records;
+    this.built = built;
+    this.fingerprints = fingerprints;
+    this.errors = errors;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Validate the whole range on the calling thread.
+   */
+  void validate() {
+    for (int i = from; i < to; i++) {
+      try {
+        BookEntry bookEntry = build(records.get(i));
+        built[i] = bookEntry;
+        fingerprints[i] = new EntryFingerprint(bookEntry);
+      } catch (IllegalArgumentException | NullPointerException e) {
+        errors[i] = e.getMessage();
+      }
+    }
+  }
+
+  @Override
+  protected void compute() {
+    if (to - from <= LEAF_SIZE) {
+      validate();
+      return;
+    }
+
+    int middle = (from + to) >>> 1;
+    invokeAll(new ImportValidation(records, built, fingerprints, errors, from, middle),
+        new ImportValidation(records, built, fingerprints, errors, middle, to));
+  }
+
+  private static BookEntry build(String[] record) {
+    if (record == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    if (record.length != EntryField.FIELDS.length) {
+      throw new IllegalArgumentException(
+          "Record must have " + EntryField.FIELDS.length + " values");
+    }
+    return new BookEntry.Builder(record[EntryField.NAME.ordinal()])
+        .phoneNumber(record[EntryField.PHONE_NUMBER.ordinal()])
+        .emailAddress(record[EntryField.EMAIL_ADDRESS.ordinal()])
+        .postalAddress(record[EntryField.POSTAL_ADDRESS.ordinal()])
+        .note(record[EntryField.NOTE.ordinal()]).build();
+  }
+}
@@ -0,0 +1,162 @@
+package addressbook;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from int keys to non-negative int values. Lookups, inserts and
+ * removals work on primitive arrays with linear probing and never allocate, except when the table
+ * grows.
+ *
+ * @author Lei Guo
+ */
+final class IntIntHashMap {
+  /** The value returned by get and remove when the key is absent. */
+  static final int NO_VALUE = -1;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int[] keys;
+  private int[] values;
+  private int size;
+
+  /**
+   * Constructor for IntIntHashMap.
+   */
+  IntIntHashMap() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Look up the value of a key.
+   *
+   * @param key The key to be looked up.
+   * @return The value of the key, or NO_VALUE if the key is absent.
+   */
+  int get(int key) {
+    int mask = keys.length - 1;
+    for (int slot = slotOf(key, mask); values[slot] != NO_VALUE; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return values[slot];
+      }
+    }
+    return NO_VALUE;
+  }
+
+  /**
+   * Associate a key with a value, replacing any previous value.
+   *
+   * @param key The key to be stored.
+   * @param value The value to be stored, must not be negative.
+   */
+  void put(int key, int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Value cannot be less than 0");
+    }
+    int mask = keys.length - 1;
+    int slot = slotOf(key, mask);
+    while (values[slot] != NO_VALUE) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    size++;
+    // Keep the load factor at or below one half so probe sequences stay short
+    if (size * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+  }
+
+  /**
+   * Remove a key from the map.
+   *
+   * @param key The key to be removed.
+   * @return The value the key had, or NO_VALUE if the key is absent.
+   */
+  int remove(int key) {
+    int mask = keys.length - 1;
+    int slot = slotOf(key, mask);
+    while (values[slot] != NO_VALUE) {
+      if (keys[slot] == key) {
+        int removed = values[slot];
+        shiftBack(slot, mask);
+        size--;
+        return removed;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return NO_VALUE;
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of keys in the map.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Remove every key from the map and shrink it back to its initial capacity.
+   */
+  void clear() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Close the gap left at a removed slot by moving later entries of the same probe run back, so
+   * no tombstones are needed.
+   */
+  private void shiftBack(int gap, int mask) {
+    int slot = gap;
+    while (true) {
+      slot = (slot + 1) & mask;
+      if (values[slot] == NO_VALUE) {
+        break;
+      }
+      int home = slotOf(keys[slot], mask);
+      // Move the entry only if its home slot is not cyclically between the gap and its slot
+      boolean movable = gap <= slot ? (home <= gap || home > slot) : (home <= gap && home > slot);
+      if (movable) {
+        keys[gap] = keys[slot];
+        values[gap] = values[slot];
+        gap = slot;
+      }
+    }
+    values[gap] = NO_VALUE;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(capacity);
+    int mask = capacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != NO_VALUE) {
+        int slot = slotOf(oldKeys[i], mask);
+        while (values[slot] != NO_VALUE) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+        size++;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    values = new int[capacity];
+    Arrays.fill(values, NO_VALUE);
+    size = 0;
+  }
+
+  private static int slotOf(int key, int mask) {
+    int hash = key * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+}
@@ -0,0 +1,84 @@
+package addressbook;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds with logarithmic buckets: every power of two is split
+ * into four buckets, so a percentile read from the histogram is at most 25% above the true value
+ * whatever the range of the durations, with a fixed number of counters. Recording is lock-free.
+ *
+ * @author Lei Guo
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS + 1);
+
+  private final AtomicLongArray counts;
+
+  /**
+   * Constructor for LatencyHistogram.
+   */
+  LatencyHistogram() {
+    this.counts = new AtomicLongArray(BUCKETS);
+  }
+
+  /**
+   * Count one duration.
+   *
+   * @param nanos The duration, negative durations are counted as 0.
+   */
+  void record(long nanos) {
+    counts.incrementAndGet(bucketOf(Math.max(0, nanos)));
+  }
+
+  /**
+   * Estimate a percentile of the durations counted.
+   *
+   * @param fraction The percentile as a fraction between 0 and 1, e.g. 0.99.
+   * @return The upper bound of the bucket holding the percentile, or 0 if nothing was counted.
+   */
+  long percentile(double fraction) {
+    long total = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      total += counts.get(bucket);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += counts.get(bucket);
+      if (seen >= rank) {
+        return upperBoundOf(bucket);
+      }
+    }
+    return upperBoundOf(BUCKETS - 1);
+  }
+
+  /**
+   * The first SUB_BUCKETS buckets hold the values below SUB_BUCKETS one by one; every power of
+   * two above gets SUB_BUCKETS buckets, told apart by the bits after the leading one.
+   */
+  private static int bucketOf(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+
+  private static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+    long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    long upper = ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    // the top bucket would overflow
+    return upper < 0 ? Long.MAX_VALUE : upper;
+  }
+}
@@ -0,0 +1,137 @@
+package addressbook;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only address book over a binary snapshot mapped into memory, as opened by
+ * AddressBook.openSnapshot. Opening it only reads the snapshot's header, whatever the size of the
+ * book; entries are decoded from the mapping when they are returned, as fresh copies. Searches
+ * compare the UTF-8 bytes of the query with the mapped records and only decode the matches.
+ *
+ * <p>
+ * A book that has to change is loaded in full with toAddressBook.
+ *
+ * @author Lei Guo
+ */
+public class MappedAddressBook {
+  private final BinarySnapshot snapshot;
+
+  /**
+   * Constructor for MappedAddressBook.
+   *
+   * @param snapshot The mapped snapshot.
+   */
+  MappedAddressBook(BinarySnapshot snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Get a BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry.
+   * @return A copy of the book entry with that id.
+   */
+  public BookEntry getEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    int position = snapshot.positionOf(id);
+    if (position < 0) {
+      throw new NoSuchElementException("The contact with this id does not exist");
+    }
+    return snapshot.entryAt(position);
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of book entries in the AddressBook.
+   */
+  public int size() {
+    return snapshot.size();
+  }
+
+  /**
+   * Search for book entries which match the query string, scanning the mapped entries.
+   *
+   * @param query string to be queried.
+   * @return List of copies of the book entries which match the query, in the order they were
+   *         added.
+   */
+  public List<BookEntry> searchEntry(String query) {
+    List<BookEntry> results = new ArrayList<>();
+
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+
+    byte[] needle = query.getBytes(StandardCharsets.UTF_8);
+    for (int position = 0; position < snapshot.size(); position++) {
+      if (snapshot.matches(position, needle)) {
+        results.add(snapshot.entryAt(position));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Load every entry into a new AddressBook, which keeps the ids of the entries and goes on
+   * handing out ids where the book the snapshot was taken from left off.
+   *
+   * @return The AddressBook.
+   */
+  public AddressBook toAddressBook() {
+    List<BookEntry> entries = new ArrayList<>(snapshot.size());
+    for (BookEntry bookEntry : snapshot) {
+      entries.add(bookEntry);
+    }
+    AddressBook addressBook = new AddressBook();
+    addressBook.restore(entries, snapshot.nextId());
+    return addressBook;
+  }
+
+  /**
+   * Save the AddressBook to a JSON file.
+   *
+   * @param path the output path.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  public void saveToFile(String path) throws FileNotFoundException {
+    saveToFile(path, true);
+  }
+
+  /**
+   * Save the AddressBook to a JSON file, decoding one entry at a time.
+   *
+   * @param path the output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  public void saveToFile(String path, boolean prettyPrinting) throws FileNotFoundException {
+    try {
+      EntryJson.writeFile(path, prettyPrinting, snapshot);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Override toString() for the AddressBook.
+   *
+   * @return the good-looking String format of the AddressBook.
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (BookEntry bookEntry : snapshot) {
+      result.append(bookEntry).append('\n');
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,48 @@
+package addressbook;
+
+/**
+ * Receives a measurement of every instrumented operation of an AddressBook it is attached to with
+ * AddressBook.setMetricsListener. Listeners are called on the thread running the operation, after
+ * it completes, so they should be quick; AddressBookMetrics is a ready-made one that aggregates
+ * the measurements.
+ *
+ * @author Lei Guo
+ */
+public interface MetricsListener {
+  /**
+   * The instrumented operations.
+   */
+  enum Operation {
+    /** searchEntry, with or without case and accents. */
+    SEARCH_ENTRY,
+    /** searchEntryParallel. */
+    SEARCH_ENTRY_PARALLEL,
+    /** searchQuery. */
+    SEARCH_QUERY,
+    /** saveToFile. */
+    SAVE_TO_FILE,
+    /** readFromFile. */
+    READ_FROM_FILE
+  }
+
+  /**
+   * Called after a search.
+   *
+   * @param operation The kind of search.
+   * @param nanos The time the search took, in nanoseconds.
+   * @param entriesScanned The number of entries checked against the query, which is the number of
+   *        index candidates when an index answered the query and the size of the book otherwise.
+   * @param resultSize The number of entries found.
+   */
+  void searched(Operation operation, long nanos, int entriesScanned, int resultSize);
+
+  /**
+   * Called after the book was saved to or read from a file.
+   *
+   * @param operation SAVE_TO_FILE or READ_FROM_FILE.
+   * @param nanos The time the transfer took, in nanoseconds.
+   * @param bytes The size of the file written or read, in bytes.
+   * @param entries The number of entries written or read.
+   */
+  void transferred(Operation operation, long nanos, long bytes, int entries);
+}
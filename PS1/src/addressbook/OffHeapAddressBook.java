@@ -0,0 +1,220 @@
+package addressbook;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An EntryBook for books of tens of millions of entries. The entries are serialized into memory
+ * outside the Java heap by an OffHeapEntryStore, so the garbage collector only traces a few
+ * primitive arrays, however large the book grows. BookEntry objects are decoded from their
+ * records whenever an entry is returned, and are fresh copies that do not change the book.
+ *
+ * <p>
+ * The book keeps no search index: a search compares the UTF-8 bytes of the query with the bytes of
+ * every record, without decoding a String until an entry matches.
+ *
+ * @author Lei Guo
+ */
+public class OffHeapAddressBook implements EntryBook {
+  private final OffHeapEntryStore entries;
+  private int nextId;
+
+  /**
+   * Constructor for OffHeapAddressBook
+   */
+  public OffHeapAddressBook() {
+    this.entries = new OffHeapEntryStore();
+    this.nextId = 0;
+  }
+
+  /**
+   * Add a new BookEntry to the AddressBook. The entry is serialized into the book and the entry
+   * itself is not kept.
+   *
+   * @param bookEntry The book entry to be added.
+   * @return true if the book entry could be add to the address book successfully, false if an
+   *         entry with the same content is already in it.
+   */
+  @Override
+  public boolean addEntry(BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    if (!entries.add(bookEntry, nextId)) {
+      return false;
+    }
+    bookEntry.setId(nextId);
+    nextId++;
+    return true;
+  }
+
+  /**
+   * Remove an BookEntry (Object) from the AddressBook.
+   *
+   * @param bookEntry The book entry to be removed.
+   * @return true if the book entry could be removed successfully.
+   */
+  @Override
+  public boolean removeEntry(BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    BookEntry stored = entries.get(bookEntry.getId());
+    if (stored == null || !bookEntry.equals(stored)) {
+      return false;
+    }
+    entries.remove(bookEntry.getId());
+    return true;
+  }
+
+  /**
+   * Remove an BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry to be removed.
+   * @return The book entry removed.
+   */
+  @Override
+  public BookEntry removeEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    BookEntry bookEntry = entries.remove(id);
+    if (bookEntry == null) {
+      throw new NoSuchElementException("The contact want to be removed does not exist");
+    }
+    return bookEntry;
+  }
+
+  /**
+   * Get a BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry.
+   * @return A copy of the book entry with that id.
+   */
+  @Override
+  public BookEntry getEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+
+    BookEntry bookEntry = entries.get(id);
+    if (bookEntry == null) {
+      throw new NoSuchElementException("The contact with this id does not exist");
+    }
+    return bookEntry;
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of book entries in the AddressBook.
+   */
+  @Override
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Clear the AddressBook
+   */
+  @Override
+  public void clear() {
+    entries.clear();
+    nextId = 0;
+  }
+
+  /**
+   * Search for book entries which match the query string, scanning the serialized entries.
+   *
+   * @param query string to be queried.
+   * @return List of copies of the book entries which match the query, in the order they were
+   *         added.
+   */
+  @Override
+  public List<BookEntry> searchEntry(String query) {
+    List<BookEntry> results = new ArrayList<>();
+
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+
+    entries.search(query.getBytes(StandardCharsets.UTF_8), results);
+    return results;
+  }
+
+  /**
+   * Save the AddressBook to a JSON file.
+   *
+   * @param path the output path.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void saveToFile(String path) throws FileNotFoundException {
+    saveToFile(path, true);
+  }
+
+  /**
+   * Save the AddressBook to a JSON file, decoding one entry at a time.
+   *
+   * @param path the output path.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void saveToFile(String path, boolean prettyPrinting) throws FileNotFoundException {
+    try {
+      EntryJson.writeFile(path, prettyPrinting, entries);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Read the AddressBook from a JSON file, streaming one entry at a time. Entries read get new ids,
+   * as if they were added one by one. A file which is malformed or cut short throws
+   * JsonSyntaxException, and the entries it added are taken back.
+   *
+   * @param path the input path.
+   * @throws FileNotFoundException if file cannot be found.
+   */
+  @Override
+  public void readFromFile(String path) throws FileNotFoundException {
+    // Entries are added as they are read, rather than held on the heap until the end of the file,
+    // and taken back if the file turns out to be corrupt
+    int firstId = nextId;
+    boolean complete = false;
+    try {
+      // do not preserve the ids read
+      EntryJson.readFile(path, this::addEntry);
+      complete = true;
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      if (!complete) {
+        for (int id = firstId; id < nextId; id++) {
+          entries.remove(id);
+        }
+      }
+    }
+  }
+
+  /**
+   * Override toString() for the AddressBook.
+   *
+   * @return the good-looking String format of the AddressBook.
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (BookEntry bookEntry : entries) {
+      result.append(bookEntry).append('\n');
+    }
+    return result.toString();
+  }
+
+}
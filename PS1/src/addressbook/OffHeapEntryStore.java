@@ -0,0 +1,455 @@
+package addressbook;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The entries of an address book, serialized into direct ByteBuffer slabs outside the Java heap.
+ * The heap only holds primitive arrays indexed by position: the address of each record, its id
+ * and the hash of its content, plus a primitive map from id to position and a table of positions
+ * keyed by content hash for duplicate detection. The garbage collector therefore sees a few
+ * arrays however many entries the store holds.
+ *
+ * <p>
+ * A record is the id, the UTF-8 length of each attribute in EntryField order (-1 for a missing
+ * one) and the UTF-8 bytes of the attributes, padded to a multiple of eight bytes. Records are
+ * appended in insertion order and never span two slabs. An address packs the slab number with
+ * the record's offset in eight-byte units into one int.
+ *
+ * <p>
+ * Removing an entry only marks its position. Once removed records make up most of the store, a
+ * compaction pass slides the live records down over them in place, which never moves a record
+ * forward, and drops the slabs left empty.
+ *
+ * @author Lei Guo
+ */
+final class OffHeapEntryStore implements Iterable<BookEntry> {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int SLAB_SHIFT = 24;
+  private static final int SLAB_SIZE = 1 << SLAB_SHIFT;
+  private static final int ALIGNMENT_SHIFT = 3;
+  private static final int ALIGNMENT = 1 << ALIGNMENT_SHIFT;
+  private static final int OFFSET_BITS = SLAB_SHIFT - ALIGNMENT_SHIFT;
+  // keeps addresses positive, for up to 16 GB of records
+  private static final int MAX_SLABS = 1 << (Integer.SIZE - 1 - OFFSET_BITS);
+  private static final int HEADER_SIZE = Integer.BYTES * (1 + EntryField.FIELDS.length);
+  private static final int MISSING = -1;
+  private static final int REMOVED = -1;
+  // slots of the content table
+  private static final int EMPTY = -1;
+  private static final int DELETED = -2;
+
+  private ByteBuffer[] slabs;
+  private int slabCount;
+  private int writeOffset;
+  private long usedBytes;
+  private long removedBytes;
+
+  // by position, in insertion order, with REMOVED addresses for removed entries
+  private int[] addresses;
+  private int[] ids;
+  private int[] hashes;
+  private int limit;
+  private int size;
+  private final IntIntHashMap positions;
+
+  // open-addressing table of positions keyed by content hash
+  private int[] contentTable;
+  private int contentTableUsed;
+
+  /**
+   * Constructor for OffHeapEntryStore.
+   */
+  OffHeapEntryStore() {
+    this.positions = new IntIntHashMap();
+    reset();
+  }
+
+  /**
+   * Append an entry under an id, unless an entry with the same content is already stored.
+   *
+   * @param bookEntry The entry to be added.
+   * @param id The id the entry is stored under.
+   * @return true if the entry was added, false if it is a duplicate.
+   * @throws IllegalArgumentException if the entry does not fit in a slab.
+   */
+  boolean add(BookEntry bookEntry, int id) {
+    byte[] record = encode(bookEntry);
+    int hash = hash(record);
+    if (findPosition(record, hash) != EMPTY) {
+      return false;
+    }
+    if (record.length > SLAB_SIZE) {
+      throw new IllegalArgumentException("Contact is too large to be stored");
+    }
+    if (limit == addresses.length) {
+      if (size * 2 <= limit) {
+        compact();
+      } else {
+        int capacity = addresses.length * 2;
+        addresses = Arrays.copyOf(addresses, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+      }
+    }
+    if ((contentTableUsed + 1) * 2 > contentTable.length) {
+      rebuildContentTable(Math.max(contentTable.length, Integer.highestOneBit((size + 1) * 4)));
+    }
+
+    int address = allocate(record.length);
+    ByteBuffer slab = slabs[address >>> OFFSET_BITS];
+    int offset = offsetOf(address);
+    slab.putInt(offset, id);
+    for (int i = Integer.BYTES; i < record.length; i++) {
+      slab.put(offset + i, record[i]);
+    }
+
+    int position = limit++;
+    addresses[position] = address;
+    ids[position] = id;
+    hashes[position] = hash;
+    positions.put(id, position);
+    size++;
+    insertContent(position);
+    return true;
+  }
+
+  /**
+   * Look up an entry by id.
+   *
+   * @param id The id of the entry.
+   * @return A copy of the entry decoded from its record, or null if there is no entry with that
+   *         id.
+   */
+  BookEntry get(int id) {
+    int position = positions.get(id);
+    return position == IntIntHashMap.NO_VALUE ? null : decode(addresses[position]);
+  }
+
+  /**
+   * Remove an entry by id.
+   *
+   * @param id The id of the entry.
+   * @return A copy of the entry removed, or null if there is no entry with that id.
+   */
+  BookEntry remove(int id) {
+    int position = positions.remove(id);
+    if (position == IntIntHashMap.NO_VALUE) {
+      return null;
+    }
+    BookEntry removed = decode(addresses[position]);
+    removeContent(position);
+    removedBytes += recordSize(addresses[position]);
+    addresses[position] = REMOVED;
+    size--;
+    if (size == 0) {
+      reset();
+    } else if ((size * 4 < limit && limit > INITIAL_CAPACITY)
+        || (removedBytes * 2 > usedBytes && usedBytes > SLAB_SIZE)) {
+      compact();
+    }
+    return removed;
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of entries in the store.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Find the entries with an attribute containing a byte sequence, comparing the UTF-8 bytes of
+   * the records directly. Only the matching entries are decoded.
+   *
+   * @param needle The UTF-8 bytes of the query.
+   * @param results The list the matching entries are appended to, in insertion order.
+   */
+  void search(byte[] needle, List<BookEntry> results) {
+    for (int position = 0; position < limit; position++) {
+      int address = addresses[position];
+      if (address != REMOVED && matches(address, needle)) {
+        results.add(decode(address));
+      }
+    }
+  }
+
+  /**
+   * Remove every entry from the store and give its slabs back.
+   */
+  void clear() {
+    positions.clear();
+    reset();
+  }
+
+  /**
+   * Iterate the entries in insertion order, decoding one at a time.
+   *
+   * @return The iterator over the entries.
+   */
+  @Override
+  public Iterator<BookEntry> iterator() {
+    return new Iterator<BookEntry>() {
+      private int position = skipRemoved(0);
+
+      @Override
+      public boolean hasNext() {
+        return position < limit;
+      }
+
+      @Override
+      public BookEntry next() {
+        if (position >= limit) {
+          throw new NoSuchElementException();
+        }
+        BookEntry next = decode(addresses[position]);
+        position = skipRemoved(position + 1);
+        return next;
+      }
+    };
+  }
+
+  private void reset() {
+    slabs = new ByteBuffer[4];
+    slabCount = 0;
+    writeOffset = SLAB_SIZE;
+    usedBytes = 0;
+    removedBytes = 0;
+    addresses = new int[INITIAL_CAPACITY];
+    ids = new int[INITIAL_CAPACITY];
+    hashes = new int[INITIAL_CAPACITY];
+    limit = 0;
+    size = 0;
+    contentTable = new int[INITIAL_CAPACITY * 2];
+    Arrays.fill(contentTable, EMPTY);
+    contentTableUsed = 0;
+  }
+
+  private int skipRemoved(int position) {
+    while (position < limit && addresses[position] == REMOVED) {
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * Reserve room for a record at the end of the last slab, starting a new slab if it is full.
+   */
+  private int allocate(int recordSize) {
+    if (writeOffset + recordSize > SLAB_SIZE) {
+      if (slabCount == MAX_SLABS) {
+        throw new IllegalStateException("The address book is full");
+      }
+      if (slabCount == slabs.length) {
+        slabs = Arrays.copyOf(slabs, slabs.length * 2);
+      }
+      slabs[slabCount++] = ByteBuffer.allocateDirect(SLAB_SIZE);
+      writeOffset = 0;
+    }
+    int address = ((slabCount - 1) << OFFSET_BITS) | (writeOffset >>> ALIGNMENT_SHIFT);
+    writeOffset += recordSize;
+    usedBytes += recordSize;
+    return address;
+  }
+
+  private static int offsetOf(int address) {
+    return (address & ((1 << OFFSET_BITS) - 1)) << ALIGNMENT_SHIFT;
+  }
+
+  private int recordSize(int address) {
+    ByteBuffer slab = slabs[address >>> OFFSET_BITS];
+    int offset = offsetOf(address) + Integer.BYTES;
+    int size = HEADER_SIZE;
+    for (int field = 0; field < EntryField.FIELDS.length; field++) {
+      size += Math.max(0, slab.getInt(offset + field * Integer.BYTES));
+    }
+    return align(size);
+  }
+
+  private boolean matches(int address, byte[] needle) {
+    ByteBuffer slab = slabs[address >>> OFFSET_BITS];
+    int offset = offsetOf(address) + Integer.BYTES;
+    int value = offset + EntryField.FIELDS.length * Integer.BYTES;
+    for (int field = 0; field < EntryField.FIELDS.length; field++) {
+      int length = slab.getInt(offset + field * Integer.BYTES);
+      if (length != MISSING) {
+        if (ByteSearch.contains(slab, value, length, needle)) {
+          return true;
+        }
+        value += length;
+      }
+    }
+    return false;
+  }
+
+  private BookEntry decode(int address) {
+    ByteBuffer slab = slabs[address >>> OFFSET_BITS];
+    int offset = offsetOf(address);
+    int id = slab.getInt(offset);
+    offset += Integer.BYTES;
+    int value = offset + EntryField.FIELDS.length * Integer.BYTES;
+    String[] values = new String[EntryField.FIELDS.length];
+    for (int field = 0; field < values.length; field++) {
+      int length = slab.getInt(offset + field * Integer.BYTES);
+      if (length != MISSING) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+          bytes[i] = slab.get(value + i);
+        }
+        values[field] = new String(bytes, StandardCharsets.UTF_8);
+        value += length;
+      }
+    }
+    return BookEntry.fromTrustedValues(id, values);
+  }
+
+  /**
+   * Serialize an entry into a record, leaving the id blank so that equal content gives equal
+   * bytes.
+   */
+  private static byte[] encode(BookEntry bookEntry) {
+    byte[][] values = new byte[EntryField.FIELDS.length][];
+    int size = HEADER_SIZE;
+    for (EntryField field : EntryField.FIELDS) {
+      String value = field.valueOf(bookEntry);
+      if (value != null) {
+        values[field.ordinal()] = value.getBytes(StandardCharsets.UTF_8);
+        size += values[field.ordinal()].length;
+      }
+    }
+    ByteBuffer record = ByteBuffer.allocate(align(size));
+    record.putInt(0);
+    for (byte[] value : values) {
+      record.putInt(value == null ? MISSING : value.length);
+    }
+    for (byte[] value : values) {
+      if (value != null) {
+        record.put(value);
+      }
+    }
+    return record.array();
+  }
+
+  private static int align(int size) {
+    return (size + ALIGNMENT - 1) & -ALIGNMENT;
+  }
+
+  private static int hash(byte[] record) {
+    int hash = 1;
+    for (int i = Integer.BYTES; i < record.length; i++) {
+      hash = 31 * hash + record[i];
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private boolean sameContent(int address, byte[] record) {
+    if (recordSize(address) != record.length) {
+      return false;
+    }
+    ByteBuffer slab = slabs[address >>> OFFSET_BITS];
+    int offset = offsetOf(address);
+    for (int i = Integer.BYTES; i < record.length; i++) {
+      if (slab.get(offset + i) != record[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int findPosition(byte[] record, int hash) {
+    int mask = contentTable.length - 1;
+    for (int slot = hash & mask; contentTable[slot] != EMPTY; slot = (slot + 1) & mask) {
+      int position = contentTable[slot];
+      if (position != DELETED && hashes[position] == hash
+          && sameContent(addresses[position], record)) {
+        return position;
+      }
+    }
+    return EMPTY;
+  }
+
+  private void insertContent(int position) {
+    int mask = contentTable.length - 1;
+    int slot = hashes[position] & mask;
+    while (contentTable[slot] >= 0) {
+      slot = (slot + 1) & mask;
+    }
+    if (contentTable[slot] == EMPTY) {
+      contentTableUsed++;
+    }
+    contentTable[slot] = position;
+  }
+
+  private void removeContent(int position) {
+    int mask = contentTable.length - 1;
+    int slot = hashes[position] & mask;
+    while (contentTable[slot] != position) {
+      slot = (slot + 1) & mask;
+    }
+    // leave a tombstone, since later positions of the probe run may have passed this slot
+    contentTable[slot] = DELETED;
+  }
+
+  private void rebuildContentTable(int capacity) {
+    contentTable = new int[capacity];
+    Arrays.fill(contentTable, EMPTY);
+    contentTableUsed = 0;
+    for (int position = 0; position < limit; position++) {
+      if (addresses[position] != REMOVED) {
+        insertContent(position);
+      }
+    }
+  }
+
+  /**
+   * Squeeze the removed entries out of the positions and their records out of the slabs. Live
+   * records keep their order, so each one moves to an address at or below its own and can be
+   * copied forward in place, eight bytes at a time.
+   */
+  private void compact() {
+    int to = 0;
+    int slab = 0;
+    int offset = 0;
+    for (int from = 0; from < limit; from++) {
+      int address = addresses[from];
+      if (address == REMOVED) {
+        continue;
+      }
+      int recordSize = recordSize(address);
+      if (offset + recordSize > SLAB_SIZE) {
+        slab++;
+        offset = 0;
+      }
+      int target = (slab << OFFSET_BITS) | (offset >>> ALIGNMENT_SHIFT);
+      if (target != address) {
+        ByteBuffer source = slabs[address >>> OFFSET_BITS];
+        int sourceOffset = offsetOf(address);
+        for (int i = 0; i < recordSize; i += ALIGNMENT) {
+          slabs[slab].putLong(offset + i, source.getLong(sourceOffset + i));
+        }
+      }
+      offset += recordSize;
+      addresses[to] = target;
+      ids[to] = ids[from];
+      hashes[to] = hashes[from];
+      positions.put(ids[to], to);
+      to++;
+    }
+    limit = to;
+
+    // let the collector free the slabs nothing points into any more
+    int keptSlabs = to == 0 ? 0 : slab + 1;
+    Arrays.fill(slabs, keptSlabs, slabCount, null);
+    slabCount = keptSlabs;
+    writeOffset = to == 0 ? SLAB_SIZE : offset;
+    usedBytes -= removedBytes;
+    removedBytes = 0;
+    rebuildContentTable(contentTable.length);
+  }
+}
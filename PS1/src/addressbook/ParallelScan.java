@@ -0,0 +1,75 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A fork/join task checking a range of entries against a query. The range is either positions of
+ * the dense array of an EntryStore or indexes into an array of candidate ids. Ranges are split in
+ * halves until they are small, and the halves' results are joined left before right, so the
+ * results come out in the same order a sequential scan would produce.
+ *
+ * @author Lei Guo
+ */
+final class ParallelScan extends RecursiveTask<List<BookEntry>> {
+  private static final long serialVersionUID = 1L;
+
+  /** Ranges at most this long are scanned by a single task. */
+  static final int LEAF_SIZE = 2048;
+
+  private final EntryStore entries;
+  private final int[] candidateIds;
+  private final String query;
+  private final int from;
+  private final int to;
+
+  /**
+   * Constructor for ParallelScan.
+   *
+   * @param entries The entries to be scanned.
+   * @param candidateIds The ids to be checked, or null to check the positions of the dense array.
+   * @param query The query string.
+   * @param from The start of the range, inclusive.
+   * @param to The end of the range, exclusive.
+   */
+  ParallelScan(EntryStore entries, int[] candidateIds, String query, int from, int to) {
+    this.entries = entries;
+    this.candidateIds = candidateIds;
+    this.query = query;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Check the whole range on the calling thread.
+   *
+   * @return The entries of the range which match the query, in order.
+   */
+  List<BookEntry> scan() {
+    List<BookEntry> results = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      BookEntry bookEntry = candidateIds == null ? entries.at(i) : entries.get(candidateIds[i]);
+      if (bookEntry != null && bookEntry.matches(query)) {
+        results.add(bookEntry);
+      }
+    }
+    return results;
+  }
+
+  @Override
+  protected List<BookEntry> compute() {
+    if (to - from <= LEAF_SIZE) {
+      return scan();
+    }
+
+    int middle = (from + to) >>> 1;
+    ParallelScan left = new ParallelScan(entries, candidateIds, query, from, middle);
+    ParallelScan right = new ParallelScan(entries, candidateIds, query, middle, to);
+    left.fork();
+    List<BookEntry> rightResults = right.compute();
+    List<BookEntry> results = left.join();
+    results.addAll(rightResults);
+    return results;
+  }
+}
@@ -0,0 +1,140 @@
+package addressbook;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index from the Soundex codes of the words of the names of entries to the ids of the entries,
+ * so that names which sound alike, such as "Smith" and "Smyth" or "Robert" and "Rupert", are found
+ * with one hash lookup per word. Words are folded for case and accents before they are coded, and
+ * characters other than the letters a to z are ignored.
+ *
+ * @author Lei Guo
+ */
+final class PhoneticIndex {
+  static final int CODE_LENGTH = 4;
+  // The Soundex digit of each letter from a to z, 0 standing for the vowels, h, w and y
+  private static final String DIGITS = "01230120022455012623010202";
+  private static final int[] NO_IDS = new int[0];
+
+  private final Map<String, PostingList> postings;
+
+  /**
+   * Constructor for PhoneticIndex.
+   */
+  PhoneticIndex() {
+    this.postings = new HashMap<>();
+  }
+
+  /**
+   * Index the words of the name of an entry.
+   *
+   * @param bookEntry The entry to be indexed, whose id is already set.
+   */
+  void add(BookEntry bookEntry) {
+    for (String code : codes(bookEntry.foldedValueOf(EntryField.NAME))) {
+      postings.computeIfAbsent(code, key -> new PostingList()).add(bookEntry.getId());
+    }
+  }
+
+  /**
+   * Remove the words of the name of an entry from the index.
+   *
+   * @param bookEntry The entry to be removed.
+   */
+  void remove(BookEntry bookEntry) {
+    for (String code : codes(bookEntry.foldedValueOf(EntryField.NAME))) {
+      PostingList list = postings.get(code);
+      if (list != null && list.remove(bookEntry.getId()) && list.isEmpty()) {
+        postings.remove(code);
+      }
+    }
+  }
+
+  /**
+   * Find the entries with a word in their name sounding like every word of the query.
+   *
+   * @param query The name or the words of the name.
+   * @return The ids of the matching entries in increasing order, none if the query has no word.
+   */
+  int[] search(String query) {
+    Set<String> codes = codes(BookEntry.fold(query));
+    if (codes.isEmpty()) {
+      return NO_IDS;
+    }
+    PostingList[] lists = new PostingList[codes.size()];
+    int count = 0;
+    for (String code : codes) {
+      PostingList list = postings.get(code);
+      if (list == null) {
+        return NO_IDS;
+      }
+      lists[count++] = list;
+    }
+    // Intersect from the shortest list so the result shrinks as early as possible
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+    int[] result = lists[0].toArray();
+    int length = result.length;
+    for (int i = 1; i < lists.length && length > 0; i++) {
+      length = lists[i].retainIn(result, length);
+    }
+    return Arrays.copyOf(result, length);
+  }
+
+  /**
+   * Compute the Soundex codes of the words of a folded name.
+   *
+   * @param folded The name folded with BookEntry.fold.
+   * @return The distinct codes, in the order of the words.
+   */
+  static Set<String> codes(String folded) {
+    Set<String> codes = new LinkedHashSet<>();
+    int start = 0;
+    while (start < folded.length()) {
+      while (start < folded.length() && !isLetter(folded.charAt(start))) {
+        start++;
+      }
+      int end = start;
+      while (end < folded.length() && isLetter(folded.charAt(end))) {
+        end++;
+      }
+      if (end > start) {
+        codes.add(soundex(folded, start, end));
+      }
+      start = end;
+    }
+    return codes;
+  }
+
+  /**
+   * Compute the American Soundex code of a word: its first letter followed by the digits of the
+   * next consonants, letters of the same digit next to each other or separated only by h or w
+   * counting once, padded with zeros to CODE_LENGTH characters.
+   */
+  static String soundex(String word, int start, int end) {
+    char[] code = {'0', '0', '0', '0'};
+    char first = word.charAt(start);
+    code[0] = Character.toUpperCase(first);
+    char previous = DIGITS.charAt(first - 'a');
+    int length = 1;
+    for (int i = start + 1; i < end && length < CODE_LENGTH; i++) {
+      char c = word.charAt(i);
+      if (c == 'h' || c == 'w') {
+        continue;
+      }
+      char digit = DIGITS.charAt(c - 'a');
+      if (digit != '0' && digit != previous) {
+        code[length++] = digit;
+      }
+      previous = digit;
+    }
+    return new String(code);
+  }
+
+  private static boolean isLetter(char c) {
+    return c >= 'a' && c <= 'z';
+  }
+}
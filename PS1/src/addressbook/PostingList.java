@@ -0,0 +1,147 @@
+package addressbook;
+
+import java.util.Arrays;
+
+/**
+ * A sorted, duplicate-free list of entry ids backed by a primitive int array.
+ *
+ * @author Lei Guo
+ */
+final class PostingList {
+  private static final int INITIAL_CAPACITY = 4;
+
+  private int[] ids;
+  private int size;
+
+  /**
+   * Constructor for PostingList.
+   */
+  PostingList() {
+    this.ids = new int[INITIAL_CAPACITY];
+    this.size = 0;
+  }
+
+  /**
+   * Add an id to the list. Ids are normally handed out in increasing order, so this is an append
+   * in the common case.
+   *
+   * @param id The id to be added.
+   */
+  void add(int id) {
+    if (size > 0 && ids[size - 1] >= id) {
+      int position = Arrays.binarySearch(ids, 0, size, id);
+      if (position >= 0) {
+        return;
+      }
+      insertAt(-position - 1, id);
+      return;
+    }
+    insertAt(size, id);
+  }
+
+  /**
+   * Remove an id from the list.
+   *
+   * @param id The id to be removed.
+   * @return true if the id was in the list.
+   */
+  boolean remove(int id) {
+    int position = Arrays.binarySearch(ids, 0, size, id);
+    if (position < 0) {
+      return false;
+    }
+    System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+    size--;
+    return true;
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of ids in the list.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Determine if the list is empty.
+   *
+   * @return true if the list holds no ids.
+   */
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Get the id at a position of the list.
+   *
+   * @param position The position, from 0 to size - 1.
+   * @return The id at that position.
+   */
+  int get(int position) {
+    return ids[position];
+  }
+
+  /**
+   * Find the first position at or after a given one whose id is at least the target, galloping
+   * ahead before a binary search so that a walk through the list in small steps stays cheap.
+   *
+   * @param from The position to start from.
+   * @param target The smallest id wanted.
+   * @return The position found, or size if every id from there on is smaller than the target.
+   */
+  int seek(int from, int target) {
+    if (from >= size || ids[from] >= target) {
+      return from;
+    }
+    // ids[from + bound / 2] is known to be smaller than the target
+    int bound = 1;
+    while (from + bound < size && ids[from + bound] < target) {
+      bound <<= 1;
+    }
+    int position =
+        Arrays.binarySearch(ids, from + (bound >> 1) + 1, Math.min(from + bound + 1, size), target);
+    return position >= 0 ? position : -position - 1;
+  }
+
+  /**
+   * Copy the ids out of the list.
+   *
+   * @return The ids in increasing order.
+   */
+  int[] toArray() {
+    return Arrays.copyOf(ids, size);
+  }
+
+  /**
+   * Keep only the ids of the given sorted array which are also in this list.
+   *
+   * @param candidates Sorted ids to be filtered.
+   * @param length The number of valid ids in candidates.
+   * @return The number of ids kept, which are moved to the front of candidates.
+   */
+  int retainIn(int[] candidates, int length) {
+    int kept = 0;
+    int from = 0;
+    for (int i = 0; i < length && from < size; i++) {
+      int position = Arrays.binarySearch(ids, from, size, candidates[i]);
+      if (position >= 0) {
+        candidates[kept++] = candidates[i];
+        from = position + 1;
+      } else {
+        from = -position - 1;
+      }
+    }
+    return kept;
+  }
+
+  private void insertAt(int position, int id) {
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+    System.arraycopy(ids, position, ids, position + 1, size - position);
+    ids[position] = id;
+    size++;
+  }
+}
@@ -0,0 +1,64 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A sorted multiset of values answering prefix queries. The values sharing a prefix are
+ * contiguous in the sorted order, so the first k completions of a prefix are found with one
+ * logarithmic seek followed by k steps.
+ *
+ * @author Lei Guo
+ */
+final class PrefixIndex {
+  private final TreeMap<String, Integer> counts;
+
+  /**
+   * Constructor for PrefixIndex.
+   */
+  PrefixIndex() {
+    this.counts = new TreeMap<>();
+  }
+
+  /**
+   * Add one occurrence of a value.
+   *
+   * @param value The value to be added, may be null.
+   */
+  void add(String value) {
+    if (value != null) {
+      counts.merge(value, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Remove one occurrence of a value.
+   *
+   * @param value The value to be removed, may be null.
+   */
+  void remove(String value) {
+    if (value != null) {
+      counts.computeIfPresent(value, (key, count) -> count == 1 ? null : count - 1);
+    }
+  }
+
+  /**
+   * Find the first values starting with a prefix.
+   *
+   * @param prefix The prefix.
+   * @param limit The maximum number of values to return.
+   * @return The distinct values starting with the prefix, in lexicographic order.
+   */
+  List<String> complete(String prefix, int limit) {
+    List<String> completions = new ArrayList<>(Math.min(limit, 16));
+    for (Map.Entry<String, Integer> entry : counts.tailMap(prefix, true).entrySet()) {
+      if (completions.size() == limit || !entry.getKey().startsWith(prefix)) {
+        break;
+      }
+      completions.add(entry.getKey());
+    }
+    return completions;
+  }
+}
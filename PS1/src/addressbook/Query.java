@@ -0,0 +1,196 @@
+package addressbook;
+
+import java.util.List;
+
+/**
+ * A parsed, field-scoped address book query. The syntax is:
+ *
+ * <pre>
+ * query := term | query AND query | query OR query | NOT query | ( query )
+ * term  := value | field:value | field=value
+ * </pre>
+ *
+ * <p>
+ * A bare value matches entries holding it anywhere, like AddressBook.searchEntry;
+ * {@code field:value} matches entries whose field contains the value and {@code field=value}
+ * those whose field is exactly the value. Fields are name, phone, email, address and note. Values
+ * holding spaces, parentheses or quotes are written in double quotes, with backslash escapes. AND
+ * binds tighter than OR, and two terms side by side are ANDed, so
+ * {@code email:@nyu.edu name:guo} is the same as {@code email:@nyu.edu AND name:guo}.
+ *
+ * @author Lei Guo
+ */
+public final class Query {
+  private final Node root;
+
+  Query(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Parse a query string.
+   *
+   * @param query The query string.
+   * @return The parsed query.
+   * @throws IllegalArgumentException if the query string is not well formed.
+   */
+  public static Query parse(String query) {
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+    return new Query(new QueryParser(query).parse());
+  }
+
+  /**
+   * Determine if an entry matches the query.
+   *
+   * @param bookEntry The book entry to be checked.
+   * @return true if the entry matches the query.
+   */
+  public boolean matches(BookEntry bookEntry) {
+    return root.matches(bookEntry);
+  }
+
+  /**
+   * Getter for root.
+   *
+   * @return The root of the syntax tree.
+   */
+  Node root() {
+    return root;
+  }
+
+  /**
+   * Override the toString function to show how the query was parsed.
+   *
+   * @return The fully parenthesized query.
+   */
+  @Override
+  public String toString() {
+    return root.toString();
+  }
+
+  /**
+   * A node of the syntax tree.
+   */
+  abstract static class Node {
+    abstract boolean matches(BookEntry bookEntry);
+  }
+
+  /**
+   * A value to be found in one field, or in any field when the field is null.
+   */
+  static final class Term extends Node {
+    final EntryField field;
+    final String value;
+    final boolean exact;
+
+    Term(EntryField field, String value, boolean exact) {
+      this.field = field;
+      this.value = value;
+      this.exact = exact;
+    }
+
+    @Override
+    boolean matches(BookEntry bookEntry) {
+      if (field == null) {
+        return bookEntry.matches(value);
+      }
+      String fieldValue = field.valueOf(bookEntry);
+      if (fieldValue == null) {
+        return false;
+      }
+      return exact ? fieldValue.equals(value) : fieldValue.contains(value);
+    }
+
+    @Override
+    public String toString() {
+      String quoted = "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+      return field == null ? quoted : field.queryName() + (exact ? "=" : ":") + quoted;
+    }
+  }
+
+  /**
+   * Entries matching every child.
+   */
+  static final class And extends Node {
+    final List<Node> children;
+
+    And(List<Node> children) {
+      this.children = children;
+    }
+
+    @Override
+    boolean matches(BookEntry bookEntry) {
+      for (Node child : children) {
+        if (!child.matches(bookEntry)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return join(children, " AND ");
+    }
+  }
+
+  /**
+   * Entries matching any child.
+   */
+  static final class Or extends Node {
+    final List<Node> children;
+
+    Or(List<Node> children) {
+      this.children = children;
+    }
+
+    @Override
+    boolean matches(BookEntry bookEntry) {
+      for (Node child : children) {
+        if (child.matches(bookEntry)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return join(children, " OR ");
+    }
+  }
+
+  /**
+   * Entries not matching the child.
+   */
+  static final class Not extends Node {
+    final Node child;
+
+    Not(Node child) {
+      this.child = child;
+    }
+
+    @Override
+    boolean matches(BookEntry bookEntry) {
+      return !child.matches(bookEntry);
+    }
+
+    @Override
+    public String toString() {
+      return "NOT " + child;
+    }
+  }
+
+  private static String join(List<Node> children, String operator) {
+    StringBuilder result = new StringBuilder("(");
+    for (int i = 0; i < children.size(); i++) {
+      if (i > 0) {
+        result.append(operator);
+      }
+      result.append(children.get(i));
+    }
+    return result.append(')').toString();
+  }
+}
@@ -0,0 +1,234 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A bounded cache of the results of AddressBook.searchEntry, keyed by query string, evicting the
+ * least recently used query first. It is bounded by the number of queries and by a total weight,
+ * the weight of a query being one plus the number of its results, so that a few broad queries
+ * cannot hold most of the book.
+ *
+ * <p>
+ * The book bumps a version on every mutation and passes it with every lookup. Results cached under
+ * another version are all dropped at once, so a cached result is never stale. Callers get a copy
+ * of the cached list, which they are free to change.
+ *
+ * <p>
+ * A cache belongs to one AddressBook, set with AddressBook.setQueryCache, and is not thread-safe.
+ *
+ * @author Lei Guo
+ */
+public class QueryCache {
+  private final int maximumEntries;
+  private final long maximumWeight;
+  private final LinkedHashMap<String, List<BookEntry>> results;
+  private long version;
+  private long weight;
+
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  private long invalidationCount;
+
+  /**
+   * The Builder class for QueryCache using the BuilderPattern.
+   */
+  public static class Builder {
+    // Optional parameters
+    private int maximumEntries = 1024;
+    private long maximumWeight = Long.MAX_VALUE;
+
+    /**
+     * Set the maximum number of queries cached; the default is 1024.
+     *
+     * @param entries The maximum number of queries.
+     * @return The Builder after the maximum is set.
+     */
+    public Builder maximumEntries(int entries) {
+      if (entries <= 0) {
+        throw new IllegalArgumentException("Maximum entries must be greater than 0");
+      }
+      this.maximumEntries = entries;
+      return this;
+    }
+
+    /**
+     * Set the maximum total weight of the cached queries, each weighing one plus its number of
+     * results; unbounded by default. A query weighing more than the maximum is not cached.
+     *
+     * @param weight The maximum total weight.
+     * @return The Builder after the maximum is set.
+     */
+    public Builder maximumWeight(long weight) {
+      if (weight <= 0) {
+        throw new IllegalArgumentException("Maximum weight must be greater than 0");
+      }
+      this.maximumWeight = weight;
+      return this;
+    }
+
+    /**
+     * This method create a new QueryCache.
+     *
+     * @return The new QueryCache based on the Builder.
+     */
+    public QueryCache build() {
+      return new QueryCache(this);
+    }
+  }
+
+  private QueryCache(Builder builder) {
+    this.maximumEntries = builder.maximumEntries;
+    this.maximumWeight = builder.maximumWeight;
+    // access order, so iteration starts from the least recently used query
+    this.results = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Look up the results of a query.
+   *
+   * @param query The query string.
+   * @param bookVersion The current version of the book.
+   * @return A copy of the cached results, or null if they are not cached.
+   */
+  List<BookEntry> get(String query, long bookVersion) {
+    checkVersion(bookVersion);
+    List<BookEntry> cached = results.get(query);
+    if (cached == null) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    return new ArrayList<>(cached);
+  }
+
+  /**
+   * Cache the results of a query, evicting the least recently used queries to stay in bounds.
+   *
+   * @param query The query string.
+   * @param bookVersion The version of the book the results were found in.
+   * @param found The results, copied into the cache.
+   */
+  void put(String query, long bookVersion, List<BookEntry> found) {
+    checkVersion(bookVersion);
+    long entryWeight = weightOf(found);
+    if (entryWeight > maximumWeight) {
+      return;
+    }
+    List<BookEntry> replaced =
+        results.put(query, Collections.unmodifiableList(new ArrayList<>(found)));
+    if (replaced != null) {
+      weight -= weightOf(replaced);
+    }
+    weight += entryWeight;
+
+    Iterator<List<BookEntry>> eldest = results.values().iterator();
+    while (results.size() > maximumEntries || weight > maximumWeight) {
+      weight -= weightOf(eldest.next());
+      eldest.remove();
+      evictionCount++;
+    }
+  }
+
+  /**
+   * Drop every cached result.
+   */
+  void invalidate() {
+    if (!results.isEmpty()) {
+      results.clear();
+      weight = 0;
+      invalidationCount++;
+    }
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of queries cached.
+   */
+  public int size() {
+    return results.size();
+  }
+
+  /**
+   * Getter for weight.
+   *
+   * @return The total weight of the queries cached.
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  /**
+   * Getter for hitCount.
+   *
+   * @return The number of lookups answered from the cache.
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Getter for missCount.
+   *
+   * @return The number of lookups not answered from the cache.
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Get the fraction of lookups answered from the cache.
+   *
+   * @return The hit rate between 0 and 1, or 0 before the first lookup.
+   */
+  public double getHitRate() {
+    long lookups = hitCount + missCount;
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+  /**
+   * Getter for evictionCount.
+   *
+   * @return The number of queries dropped to stay in bounds.
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Getter for invalidationCount.
+   *
+   * @return The number of times the cached results were dropped because the book changed.
+   */
+  public long getInvalidationCount() {
+    return invalidationCount;
+  }
+
+  /**
+   * Override toString() for the QueryCache.
+   *
+   * @return The statistics of the cache.
+   */
+  @Override
+  public String toString() {
+    return String.format("QueryCache: size=%d weight=%d hits=%d misses=%d hitRate=%.3f "
+        + "evictions=%d invalidations=%d", size(), weight, hitCount, missCount, getHitRate(),
+        evictionCount, invalidationCount);
+  }
+
+  private void checkVersion(long bookVersion) {
+    if (bookVersion != version) {
+      invalidate();
+      version = bookVersion;
+    }
+  }
+
+  private static long weightOf(List<BookEntry> found) {
+    return 1L + found.size();
+  }
+}
@@ -0,0 +1,183 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recursive descent parser for the query syntax described in Query.
+ *
+ * @author Lei Guo
+ */
+final class QueryParser {
+  private static final String AND = "AND";
+  private static final String OR = "OR";
+  private static final String NOT = "NOT";
+
+  private final String input;
+  private int position;
+
+  /**
+   * Constructor for QueryParser.
+   *
+   * @param input The query string to be parsed.
+   */
+  QueryParser(String input) {
+    this.input = input;
+    this.position = 0;
+  }
+
+  /**
+   * Parse the whole query string.
+   *
+   * @return The root of the syntax tree.
+   * @throws IllegalArgumentException if the query string is not well formed.
+   */
+  Query.Node parse() {
+    Query.Node root = parseOr();
+    skipSpaces();
+    if (position < input.length()) {
+      throw error("Unexpected '" + input.charAt(position) + "'");
+    }
+    return root;
+  }
+
+  private Query.Node parseOr() {
+    List<Query.Node> children = new ArrayList<>();
+    children.add(parseAnd());
+    while (acceptKeyword(OR)) {
+      children.add(parseAnd());
+    }
+    return children.size() == 1 ? children.get(0) : new Query.Or(children);
+  }
+
+  private Query.Node parseAnd() {
+    List<Query.Node> children = new ArrayList<>();
+    children.add(parseUnary());
+    while (true) {
+      if (acceptKeyword(AND)) {
+        children.add(parseUnary());
+      } else if (startsOperand()) {
+        children.add(parseUnary());
+      } else {
+        break;
+      }
+    }
+    return children.size() == 1 ? children.get(0) : new Query.And(children);
+  }
+
+  private Query.Node parseUnary() {
+    if (acceptKeyword(NOT)) {
+      return new Query.Not(parseUnary());
+    }
+    skipSpaces();
+    if (position < input.length() && input.charAt(position) == '(') {
+      position++;
+      Query.Node inner = parseOr();
+      skipSpaces();
+      if (position >= input.length() || input.charAt(position) != ')') {
+        throw error("Missing ')'");
+      }
+      position++;
+      return inner;
+    }
+    return parseTerm();
+  }
+
+  private Query.Node parseTerm() {
+    skipSpaces();
+    if (position >= input.length()) {
+      throw error("Missing search term");
+    }
+    if (input.charAt(position) == '"') {
+      return new Query.Term(null, readQuoted(), false);
+    }
+
+    String word = readWord();
+    if (word.isEmpty()) {
+      throw error("Unexpected '" + input.charAt(position) + "'");
+    }
+    int colon = word.indexOf(':');
+    int equals = word.indexOf('=');
+    int separator = colon < 0 ? equals : (equals < 0 ? colon : Math.min(colon, equals));
+    if (separator <= 0) {
+      return new Query.Term(null, word, false);
+    }
+    EntryField field = EntryField.forQueryName(word.substring(0, separator));
+    if (field == null) {
+      // not a field qualifier, so the colon or equals sign is part of the value
+      return new Query.Term(null, word, false);
+    }
+    boolean exact = word.charAt(separator) == '=';
+    String value = word.substring(separator + 1);
+    if (value.isEmpty()) {
+      if (position >= input.length() || input.charAt(position) != '"') {
+        throw error("Missing value for field " + field.queryName());
+      }
+      value = readQuoted();
+    }
+    return new Query.Term(field, value, exact);
+  }
+
+  private boolean startsOperand() {
+    skipSpaces();
+    if (position >= input.length() || input.charAt(position) == ')') {
+      return false;
+    }
+    return !peekKeyword(OR);
+  }
+
+  private boolean acceptKeyword(String keyword) {
+    if (peekKeyword(keyword)) {
+      position += keyword.length();
+      return true;
+    }
+    return false;
+  }
+
+  private boolean peekKeyword(String keyword) {
+    skipSpaces();
+    int end = position + keyword.length();
+    return input.startsWith(keyword, position)
+        && (end == input.length() || isDelimiter(input.charAt(end)));
+  }
+
+  private String readWord() {
+    int start = position;
+    while (position < input.length() && !isDelimiter(input.charAt(position))
+        && input.charAt(position) != '"') {
+      position++;
+    }
+    return input.substring(start, position);
+  }
+
+  private String readQuoted() {
+    StringBuilder value = new StringBuilder();
+    position++;
+    while (position < input.length()) {
+      char c = input.charAt(position++);
+      if (c == '"') {
+        return value.toString();
+      }
+      if (c == '\\' && position < input.length()) {
+        c = input.charAt(position++);
+      }
+      value.append(c);
+    }
+    throw error("Missing closing quote");
+  }
+
+  private void skipSpaces() {
+    while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+      position++;
+    }
+  }
+
+  private static boolean isDelimiter(char c) {
+    return Character.isWhitespace(c) || c == '(' || c == ')';
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " at position " + position + " of query: "
+        + input);
+  }
+}
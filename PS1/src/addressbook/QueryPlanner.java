@@ -0,0 +1,122 @@
+package addressbook;
+
+import java.util.Arrays;
+
+/**
+ * Picks the indexes answering a query. Every node of the syntax tree gets an estimated number of
+ * candidate ids: exact field terms are looked up in the field index, substring terms of at least
+ * three characters in the trigram index, and an AND takes its most selective child while an OR
+ * needs all of its children to be indexed. The candidates of the root are then checked against
+ * the whole query, so the indexes only have to produce a superset of the matches. When the root
+ * cannot be answered from an index the caller falls back to scanning the book.
+ *
+ * @author Lei Guo
+ */
+final class QueryPlanner {
+  /** The estimate of a node no index can answer. */
+  static final int UNINDEXED = Integer.MAX_VALUE;
+
+  private final TrigramIndex trigramIndex;
+  private final FieldIndex fieldIndex;
+
+  /**
+   * Constructor for QueryPlanner.
+   *
+   * @param trigramIndex The trigram index over every field.
+   * @param fieldIndex The exact value index of each field.
+   */
+  QueryPlanner(TrigramIndex trigramIndex, FieldIndex fieldIndex) {
+    this.trigramIndex = trigramIndex;
+    this.fieldIndex = fieldIndex;
+  }
+
+  /**
+   * Estimate how many candidates the indexes would produce for a node.
+   *
+   * @param node The node of the syntax tree.
+   * @return An upper bound of the number of matches, or UNINDEXED.
+   */
+  int estimate(Query.Node node) {
+    if (node instanceof Query.Term) {
+      Query.Term term = (Query.Term) node;
+      if (term.exact) {
+        return fieldIndex.count(term.field, term.value);
+      }
+      return TrigramIndex.canAnswer(term.value) ? trigramIndex.estimate(term.value) : UNINDEXED;
+    }
+    if (node instanceof Query.And) {
+      int best = UNINDEXED;
+      for (Query.Node child : ((Query.And) node).children) {
+        best = Math.min(best, estimate(child));
+      }
+      return best;
+    }
+    if (node instanceof Query.Or) {
+      long total = 0;
+      for (Query.Node child : ((Query.Or) node).children) {
+        int estimate = estimate(child);
+        if (estimate == UNINDEXED) {
+          return UNINDEXED;
+        }
+        total += estimate;
+      }
+      return (int) Math.min(total, UNINDEXED - 1);
+    }
+    return UNINDEXED;
+  }
+
+  /**
+   * Produce the candidate ids of a node whose estimate is not UNINDEXED.
+   *
+   * @param node The node of the syntax tree.
+   * @return A superset of the ids of the entries matching the node, in increasing order.
+   */
+  int[] candidates(Query.Node node) {
+    if (node instanceof Query.Term) {
+      Query.Term term = (Query.Term) node;
+      return term.exact ? fieldIndex.ids(term.field, term.value)
+          : trigramIndex.candidates(term.value);
+    }
+    if (node instanceof Query.And) {
+      Query.Node best = null;
+      int bestEstimate = UNINDEXED;
+      for (Query.Node child : ((Query.And) node).children) {
+        int estimate = estimate(child);
+        if (estimate < bestEstimate) {
+          best = child;
+          bestEstimate = estimate;
+        }
+      }
+      return candidates(best);
+    }
+    int[] union = new int[0];
+    for (Query.Node child : ((Query.Or) node).children) {
+      union = union(union, candidates(child));
+    }
+    return union;
+  }
+
+  private static int[] union(int[] a, int[] b) {
+    int[] result = new int[a.length + b.length];
+    int i = 0;
+    int j = 0;
+    int length = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) {
+        result[length++] = a[i++];
+      } else if (a[i] > b[j]) {
+        result[length++] = b[j++];
+      } else {
+        result[length++] = a[i++];
+        j++;
+      }
+    }
+    while (i < a.length) {
+      result[length++] = a[i++];
+    }
+    while (j < b.length) {
+      result[length++] = b[j++];
+    }
+    return Arrays.copyOf(result, length);
+  }
+}
@@ -0,0 +1,93 @@
+package addressbook;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the results of a search, produced by AddressBook.searchPage. The search behind a
+ * page stops as soon as the page is full, and the next page resumes the scan right after the last
+ * entry of this one, so paging through a broad query never materializes the whole result list.
+ *
+ * <p>
+ * Pages resume by id, so entries added or removed between two pages do not shift or repeat the
+ * entries already returned.
+ *
+ * @author Lei Guo
+ */
+public class SearchPage {
+  private final AddressBook addressBook;
+  private final String query;
+  private final int offset;
+  private final int limit;
+  private final List<BookEntry> entries;
+  private final boolean hasNextPage;
+
+  /**
+   * Constructor for SearchPage.
+   *
+   * @param addressBook The book searched.
+   * @param query The query string.
+   * @param offset The number of results on the pages before this one.
+   * @param limit The maximum number of results on a page.
+   * @param entries The results on this page.
+   * @param hasNextPage true if there are results after this page.
+   */
+  SearchPage(AddressBook addressBook, String query, int offset, int limit, List<BookEntry> entries,
+      boolean hasNextPage) {
+    this.addressBook = addressBook;
+    this.query = query;
+    this.offset = offset;
+    this.limit = limit;
+    this.entries = Collections.unmodifiableList(entries);
+    this.hasNextPage = hasNextPage;
+  }
+
+  /**
+   * Getter for entries.
+   *
+   * @return The results on this page, in the order they were added to the book.
+   */
+  public List<BookEntry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Getter for offset.
+   *
+   * @return The number of results on the pages before this one.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Getter for limit.
+   *
+   * @return The maximum number of results on a page.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Determine if there are more results after this page.
+   *
+   * @return true if nextPage would return results.
+   */
+  public boolean hasNextPage() {
+    return hasNextPage;
+  }
+
+  /**
+   * Search for the next page, resuming after the last entry of this one.
+   *
+   * @return The next page, which is empty if there is no more result.
+   */
+  public SearchPage nextPage() {
+    if (entries.isEmpty()) {
+      return this;
+    }
+    int lastId = entries.get(entries.size() - 1).getId();
+    return addressBook.searchPage(query, lastId, offset + entries.size(), limit);
+  }
+}
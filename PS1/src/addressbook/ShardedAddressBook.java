@@ -0,0 +1,543 @@
+package addressbook;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe address book partitioning its entries across independent AddressBook shards by
+ * id, so that writers to different shards do not wait for each other. Each shard has its own
+ * read/write lock; ids come from one global counter and duplicates are detected in one global
+ * concurrent set of fingerprints.
+ *
+ * <p>
+ * Searches scatter across the shards in a fork/join pool and gather the results in id order, which
+ * is the order the entries were added. Saving and reading write and read one JSON file per shard,
+ * in parallel. Operations on one entry are atomic; operations spanning the shards, such as size,
+ * searches and saves, see every shard at a slightly different time while writers carry on.
+ *
+ * @author Lei Guo
+ */
+public class ShardedAddressBook {
+  private static final String SHARD_FILE_PREFIX = "shard-";
+  private static final String SHARD_FILE_SUFFIX = ".json";
+
+  private final AddressBook[] shards;
+  private final ReadWriteLock[] locks;
+  private final Set<EntryFingerprint> fingerprints;
+  private final AtomicInteger nextId;
+  private final ForkJoinPool pool;
+
+  /**
+   * A piece of work run for each shard or file, possibly on another thread.
+   */
+  private interface IndexedTask<T> {
+    T run(int index) throws IOException;
+  }
+
+  /**
+   * Constructor for ShardedAddressBook, with one shard per available processor.
+   */
+  public ShardedAddressBook() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor for ShardedAddressBook, running its parallel work in the common fork/join pool.
+   *
+   * @param shardCount The number of shards.
+   */
+  public ShardedAddressBook(int shardCount) {
+    this(shardCount, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructor for ShardedAddressBook.
+   *
+   * @param shardCount The number of shards.
+   * @param pool The pool to run searches, saves and reads in.
+   */
+  public ShardedAddressBook(int shardCount, ForkJoinPool pool) {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("Shard count must be greater than 0");
+    }
+    if (pool == null) {
+      throw new NullPointerException("Pool cannot be null");
+    }
+    this.shards = new AddressBook[shardCount];
+    this.locks = new ReadWriteLock[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new AddressBook();
+      locks[i] = new ReentrantReadWriteLock();
+    }
+    this.fingerprints = ConcurrentHashMap.newKeySet();
+    this.nextId = new AtomicInteger();
+    this.pool = pool;
+  }
+
+  /**
+   * Add a new BookEntry to the AddressBook.
+   *
+   * @param bookEntry The book entry to be added.
+   * @return true if the book entry could be add to the address book successfully, false if an
+   *         entry with the same content is already in it.
+   */
+  public boolean addEntry(BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    EntryFingerprint fingerprint = new EntryFingerprint(bookEntry);
+    while (true) {
+      int id = nextId.get();
+      int shard = shardOf(id);
+      Lock lock = locks[shard].writeLock();
+      lock.lock();
+      try {
+        // The fingerprint is claimed with a shard locked, so clear and readFromDirectory, which
+        // lock every shard, cannot drop it before the entry is in
+        if (!fingerprints.add(fingerprint)) {
+          return false;
+        }
+        // Taking the id with the shard locked keeps the ids of a shard increasing with position:
+        // any later id of this shard can only be taken once this entry is in
+        if (nextId.compareAndSet(id, id + 1)) {
+          shards[shard].addEntryWithId(bookEntry, id);
+          return true;
+        }
+        fingerprints.remove(fingerprint);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Remove an BookEntry (Object) from the AddressBook.
+   *
+   * @param bookEntry The book entry to be removed.
+   * @return true if the book entry could be removed successfully.
+   */
+  public boolean removeEntry(BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    if (bookEntry.getId() < 0) {
+      return false;
+    }
+    int shard = shardOf(bookEntry.getId());
+    Lock lock = locks[shard].writeLock();
+    lock.lock();
+    try {
+      if (!shards[shard].removeEntry(bookEntry)) {
+        return false;
+      }
+      fingerprints.remove(new EntryFingerprint(bookEntry));
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove an BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry to be removed.
+   * @return The book entry removed.
+   */
+  public BookEntry removeEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+    int shard = shardOf(id);
+    Lock lock = locks[shard].writeLock();
+    lock.lock();
+    try {
+      BookEntry bookEntry = shards[shard].removeEntryById(id);
+      fingerprints.remove(new EntryFingerprint(bookEntry));
+      return bookEntry;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get a BookEntry by its id from the AddressBook.
+   *
+   * @param id The id of the book entry.
+   * @return The book entry with that id.
+   */
+  public BookEntry getEntryById(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+    int shard = shardOf(id);
+    Lock lock = locks[shard].readLock();
+    lock.lock();
+    try {
+      return shards[shard].getEntryById(id);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Replace the BookEntry with the given id by a new one, which takes over its id and its place in
+   * the AddressBook.
+   *
+   * @param id The id of the book entry to be replaced.
+   * @param bookEntry The new book entry.
+   * @return The book entry replaced.
+   */
+  public BookEntry updateEntryById(int id, BookEntry bookEntry) {
+    if (bookEntry == null) {
+      throw new NullPointerException("Contact cannot be null");
+    }
+    if (id < 0) {
+      throw new IllegalArgumentException("Contact id cannot be less than 0");
+    }
+    int shard = shardOf(id);
+    Lock lock = locks[shard].writeLock();
+    lock.lock();
+    try {
+      BookEntry current = shards[shard].getEntryById(id);
+      if (current.hasSameContent(bookEntry)) {
+        return shards[shard].updateEntryById(id, bookEntry);
+      }
+      EntryFingerprint fingerprint = new EntryFingerprint(bookEntry);
+      if (!fingerprints.add(fingerprint)) {
+        throw new IllegalArgumentException("An equal contact already exists");
+      }
+      BookEntry replaced = shards[shard].updateEntryById(id, bookEntry);
+      fingerprints.remove(new EntryFingerprint(replaced));
+      return replaced;
+    } catch (NoSuchElementException e) {
+      throw new NoSuchElementException("The contact want to be updated does not exist");
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Getter for size.
+   *
+   * @return The number of book entries in the AddressBook.
+   */
+  public int size() {
+    int size = 0;
+    for (int shard = 0; shard < shards.length; shard++) {
+      Lock lock = locks[shard].readLock();
+      lock.lock();
+      try {
+        size += shards[shard].size();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Getter for shardCount.
+   *
+   * @return The number of shards.
+   */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Clear the AddressBook
+   */
+  public void clear() {
+    lockAll();
+    try {
+      for (AddressBook shard : shards) {
+        shard.clear();
+      }
+      fingerprints.clear();
+      nextId.set(0);
+    } finally {
+      unlockAll();
+    }
+  }
+
+  /**
+   * Search for book entries which match the query string, searching the shards in parallel.
+   *
+   * @param query string to be queried.
+   * @return List of book entries which matches the query, in the order they were added.
+   */
+  public List<BookEntry> searchEntry(String query) {
+    if (query == null) {
+      throw new NullPointerException("Query string cannot be null");
+    }
+    List<List<BookEntry>> found;
+    try {
+      found = scatter(shards.length, shard -> {
+        Lock lock = locks[shard].readLock();
+        lock.lock();
+        try {
+          return shards[shard].searchEntry(query);
+        } finally {
+          lock.unlock();
+        }
+      });
+    } catch (IOException e) {
+      // searches do no I/O
+      throw new UncheckedIOException(e);
+    }
+    return gather(found);
+  }
+
+  /**
+   * Save every shard of the AddressBook to its own JSON file in a directory, in parallel. Shard
+   * files left in the directory by a book with more shards are deleted.
+   *
+   * @param directory the output directory, created if needed.
+   * @throws IOException if a file cannot be written.
+   */
+  public void saveToDirectory(String directory) throws IOException {
+    saveToDirectory(directory, true);
+  }
+
+  /**
+   * Save every shard of the AddressBook to its own JSON file in a directory, in parallel, keeping
+   * the ids of the entries. Shard files left in the directory by a book with more shards are
+   * deleted.
+   *
+   * @param directory the output directory, created if needed.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @throws IOException if a file cannot be written.
+   */
+  public void saveToDirectory(String directory, boolean prettyPrinting) throws IOException {
+    Path root = Files.createDirectories(Paths.get(directory));
+    scatter(shards.length, shard -> {
+      Lock lock = locks[shard].readLock();
+      lock.lock();
+      try {
+        return EntryJson.writeFile(shardFile(root, shard).toString(), prettyPrinting,
+            shards[shard].entries());
+      } finally {
+        lock.unlock();
+      }
+    });
+    for (Path file : listShardFiles(root)) {
+      if (shardIndexOf(file) >= shards.length) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * Replace the content of the AddressBook by the shard files in a directory, read in parallel.
+   * The files may come from a book with another number of shards. Entries keep the ids they were
+   * saved with; entries without an id, or whose id or content is already taken, get new ids.
+   *
+   * @param directory the input directory.
+   * @throws FileNotFoundException if the directory does not exist.
+   * @throws IOException if a file cannot be read or is malformed.
+   */
+  public void readFromDirectory(String directory) throws IOException {
+    Path root = Paths.get(directory);
+    if (!Files.isDirectory(root)) {
+      throw new FileNotFoundException(directory + " is not a directory");
+    }
+    List<Path> files = listShardFiles(root);
+    files.sort(Comparator.comparingInt(ShardedAddressBook::shardIndexOf));
+    List<List<BookEntry>> read = scatter(files.size(), index -> {
+      List<BookEntry> entries = new ArrayList<>();
+      EntryJson.readFile(files.get(index).toString(), entries::add);
+      return entries;
+    });
+
+    Set<EntryFingerprint> readFingerprints = ConcurrentHashMap.newKeySet();
+    IntIntHashMap ids = new IntIntHashMap();
+    List<BookEntry> withoutId = new ArrayList<>();
+    List<List<BookEntry>> partitions = new ArrayList<>(shards.length);
+    for (int shard = 0; shard < shards.length; shard++) {
+      partitions.add(new ArrayList<>());
+    }
+    int maxId = -1;
+    for (List<BookEntry> entries : read) {
+      for (BookEntry bookEntry : entries) {
+        if (!readFingerprints.add(new EntryFingerprint(bookEntry))) {
+          continue;
+        }
+        int id = bookEntry.getId();
+        if (id < 0 || ids.get(id) != IntIntHashMap.NO_VALUE) {
+          withoutId.add(bookEntry);
+        } else {
+          ids.put(id, id);
+          partitions.get(shardOf(id)).add(bookEntry);
+          maxId = Math.max(maxId, id);
+        }
+      }
+    }
+    for (BookEntry bookEntry : withoutId) {
+      bookEntry.setId(++maxId);
+      partitions.get(shardOf(maxId)).add(bookEntry);
+    }
+    int restoredNextId = maxId + 1;
+
+    // The new shards are built before locking: the pool must never be waited on with a shard
+    // locked, as its workers may themselves be waiting for that shard in a search
+    List<AddressBook> restored = scatter(shards.length, shard -> {
+      List<BookEntry> partition = partitions.get(shard);
+      partition.sort(Comparator.comparingInt(BookEntry::getId));
+      AddressBook addressBook = new AddressBook();
+      addressBook.restore(partition, restoredNextId);
+      return addressBook;
+    });
+    lockAll();
+    try {
+      for (int shard = 0; shard < shards.length; shard++) {
+        shards[shard] = restored.get(shard);
+      }
+      fingerprints.clear();
+      fingerprints.addAll(readFingerprints);
+      nextId.set(restoredNextId);
+    } finally {
+      unlockAll();
+    }
+  }
+
+  /**
+   * Override toString() for the AddressBook.
+   *
+   * @return the good-looking String format of the AddressBook.
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (BookEntry bookEntry : searchEntry("")) {
+      result.append(bookEntry).append('\n');
+    }
+    return result.toString();
+  }
+
+  /**
+   * Find the shard of an id. Ids are handed out in sequence, so taking them modulo the number of
+   * shards spreads the entries evenly.
+   */
+  private int shardOf(int id) {
+    return id % shards.length;
+  }
+
+  /**
+   * Run a task for every index in the pool, the first one on the calling thread.
+   *
+   * @return The results of the task, in index order.
+   */
+  private <T> List<T> scatter(int count, IndexedTask<T> task) throws IOException {
+    List<T> results = new ArrayList<>(count);
+    if (count == 0) {
+      return results;
+    }
+    List<ForkJoinTask<T>> forked = new ArrayList<>(count - 1);
+    for (int i = 1; i < count; i++) {
+      int index = i;
+      forked.add(pool.submit(() -> task.run(index)));
+    }
+    results.add(task.run(0));
+    for (ForkJoinTask<T> fork : forked) {
+      try {
+        results.add(fork.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a shard");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Merge the results of the shards, each sorted by id, into one list sorted by id.
+   */
+  private static List<BookEntry> gather(List<List<BookEntry>> found) {
+    int size = 0;
+    for (List<BookEntry> results : found) {
+      size += results.size();
+    }
+    List<BookEntry> merged = new ArrayList<>(size);
+    for (List<BookEntry> results : found) {
+      merged.addAll(results);
+    }
+    // The list is made of sorted runs, which the merge sort of List.sort detects and merges
+    merged.sort(Comparator.comparingInt(BookEntry::getId));
+    return merged;
+  }
+
+  private void lockAll() {
+    // Always in shard order, so that two callers cannot deadlock
+    for (ReadWriteLock lock : locks) {
+      lock.writeLock().lock();
+    }
+  }
+
+  private void unlockAll() {
+    for (int shard = locks.length - 1; shard >= 0; shard--) {
+      locks[shard].writeLock().unlock();
+    }
+  }
+
+  private static Path shardFile(Path directory, int shard) {
+    return directory.resolve(SHARD_FILE_PREFIX + shard + SHARD_FILE_SUFFIX);
+  }
+
+  private static List<Path> listShardFiles(Path directory) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+        SHARD_FILE_PREFIX + "*" + SHARD_FILE_SUFFIX)) {
+      for (Path file : stream) {
+        if (shardIndexOf(file) >= 0) {
+          files.add(file);
+        }
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Parse the shard number out of the name of a shard file.
+   *
+   * @return The shard number, or -1 if the name is not that of a shard file.
+   */
+  private static int shardIndexOf(Path file) {
+    String name = file.getFileName().toString();
+    String number =
+        name.substring(SHARD_FILE_PREFIX.length(), name.length() - SHARD_FILE_SUFFIX.length());
+    try {
+      return Integer.parseInt(number);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package addressbook;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts address book files between the JSON format of saveToFile and the binary snapshot
+ * format of saveSnapshot. Ids are carried over both ways. Run from the command line as
+ *
+ * <pre>
+ * SnapshotConverter to-snapshot book.json book.snapshot
+ * SnapshotConverter to-json book.snapshot book.json
+ * </pre>
+ *
+ * @author Lei Guo
+ */
+public final class SnapshotConverter {
+  private SnapshotConverter() {}
+
+  /**
+   * Convert a JSON file into a binary snapshot. The entries are validated as they are read, and
+   * entries without an id get the id after the one before them.
+   *
+   * @param jsonPath The JSON file to be read.
+   * @param snapshotPath The snapshot file to be written.
+   * @throws IOException if a file cannot be read or written, or the JSON is malformed.
+   * @throws IllegalArgumentException if the ids in the JSON file are not increasing.
+   */
+  public static void toSnapshot(String jsonPath, String snapshotPath) throws IOException {
+    List<BookEntry> entries = new ArrayList<>();
+    EntryJson.readFile(jsonPath, entries::add);
+    int nextId = 0;
+    for (BookEntry bookEntry : entries) {
+      if (bookEntry.getId() < 0) {
+        bookEntry.setId(nextId);
+      }
+      // a snapshot is searched by id, so it needs the ids in book order
+      if (bookEntry.getId() < nextId) {
+        throw new IllegalArgumentException("Contact ids must be increasing, but "
+            + bookEntry.getId() + " comes after " + (nextId - 1));
+      }
+      nextId = bookEntry.getId() + 1;
+    }
+    BinarySnapshot.write(snapshotPath, entries, entries.size(), nextId);
+  }
+
+  /**
+   * Convert a binary snapshot into a JSON file.
+   *
+   * @param snapshotPath The snapshot file to be read.
+   * @param jsonPath The JSON file to be written.
+   * @param prettyPrinting true to indent the output, false to write it compactly.
+   * @throws IOException if a file cannot be read or written.
+   */
+  public static void toJson(String snapshotPath, String jsonPath, boolean prettyPrinting)
+      throws IOException {
+    EntryJson.writeFile(jsonPath, prettyPrinting, BinarySnapshot.open(snapshotPath));
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 3 && args[0].equals("to-snapshot")) {
+      toSnapshot(args[1], args[2]);
+    } else if (args.length == 3 && args[0].equals("to-json")) {
+      toJson(args[1], args[2], true);
+    } else {
+      System.err.println("Usage: SnapshotConverter to-snapshot <json> <snapshot>");
+      System.err.println("       SnapshotConverter to-json <snapshot> <json>");
+      System.exit(2);
+    }
+  }
+}
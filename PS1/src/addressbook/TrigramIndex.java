@@ -0,0 +1,207 @@
+package addressbook;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An inverted index from every three-character substring (trigram) of the indexed values to the
+ * ids of the entries holding it. A value containing a query must contain every trigram of that
+ * query, so intersecting the posting lists of the query's trigrams gives a small superset of the
+ * matching ids, which the caller then verifies.
+ *
+ * @author Lei Guo
+ */
+final class TrigramIndex {
+  static final int GRAM_LENGTH = 3;
+
+  private final Map<Long, PostingList> postings;
+
+  /**
+   * Constructor for TrigramIndex.
+   */
+  TrigramIndex() {
+    this.postings = new HashMap<>();
+  }
+
+  /**
+   * Index a value under an entry id.
+   *
+   * @param id The id of the entry holding the value.
+   * @param value The value to be indexed, may be null.
+   */
+  void add(int id, String value) {
+    if (value == null) {
+      return;
+    }
+    for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+      Long gram = gramAt(value, i);
+      PostingList list = postings.get(gram);
+      if (list == null) {
+        list = new PostingList();
+        postings.put(gram, list);
+      }
+      list.add(id);
+    }
+  }
+
+  /**
+   * Remove a value previously indexed under an entry id.
+   *
+   * @param id The id of the entry holding the value.
+   * @param value The value to be removed, may be null.
+   */
+  void remove(int id, String value) {
+    if (value == null) {
+      return;
+    }
+    for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+      Long gram = gramAt(value, i);
+      PostingList list = postings.get(gram);
+      if (list != null && list.remove(id) && list.isEmpty()) {
+        postings.remove(gram);
+      }
+    }
+  }
+
+  /**
+   * Clear the index.
+   */
+  void clear() {
+    postings.clear();
+  }
+
+  /**
+   * Determine if the index can narrow down a query.
+   *
+   * @param query The query string.
+   * @return true if the query is long enough to have a trigram.
+   */
+  static boolean canAnswer(String query) {
+    return query.length() >= GRAM_LENGTH;
+  }
+
+  /**
+   * Find the ids of the entries which hold every trigram of the query.
+   *
+   * @param query The query string, at least GRAM_LENGTH characters long.
+   * @return The candidate ids in increasing order.
+   */
+  int[] candidates(String query) {
+    int gramCount = query.length() - GRAM_LENGTH + 1;
+    PostingList[] lists = new PostingList[gramCount];
+    for (int i = 0; i < gramCount; i++) {
+      lists[i] = postings.get(gramAt(query, i));
+      if (lists[i] == null) {
+        return new int[0];
+      }
+    }
+    // Intersect from the shortest list so the candidate set shrinks as early as possible
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+
+    int[] result = lists[0].toArray();
+    int length = result.length;
+    for (int i = 1; i < gramCount && length > 0; i++) {
+      if (lists[i] != lists[i - 1]) {
+        length = lists[i].retainIn(result, length);
+      }
+    }
+    return Arrays.copyOf(result, length);
+  }
+
+  /**
+   * Start a lazy intersection of the posting lists of the query's trigrams, which yields the same
+   * ids as candidates, one at a time and from any id on, without copying any list.
+   *
+   * @param query The query string, at least GRAM_LENGTH characters long.
+   * @return The intersection, valid until the index changes.
+   */
+  Intersection intersect(String query) {
+    int gramCount = query.length() - GRAM_LENGTH + 1;
+    PostingList[] lists = new PostingList[gramCount];
+    for (int i = 0; i < gramCount; i++) {
+      lists[i] = postings.get(gramAt(query, i));
+      if (lists[i] == null) {
+        return new Intersection(new PostingList[0], true);
+      }
+    }
+    // Lead with the shortest list, whose ids make the largest jumps in the others
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+    return new Intersection(lists, false);
+  }
+
+  /**
+   * An intersection of posting lists walked in increasing id order. Each list keeps its own
+   * position, and finding the next common id gallops every list forward to the largest id seen so
+   * far until they all agree, so the cost depends on how far the walk goes and not on how many ids
+   * the intersection holds in total.
+   */
+  static final class Intersection {
+    static final int NO_ID = -1;
+
+    private final PostingList[] lists;
+    private final int[] positions;
+    private final boolean empty;
+
+    private Intersection(PostingList[] lists, boolean empty) {
+      this.lists = lists;
+      this.positions = new int[lists.length];
+      this.empty = empty;
+    }
+
+    /**
+     * Find the smallest id greater than the given one which is in every list. Successive calls
+     * must pass increasing ids.
+     *
+     * @param afterId The id to search after, -1 to start from the beginning.
+     * @return The id found, or NO_ID if there is none.
+     */
+    int next(int afterId) {
+      if (empty || afterId == Integer.MAX_VALUE) {
+        return NO_ID;
+      }
+      int target = afterId + 1;
+      int agreed = 0;
+      int i = 0;
+      while (agreed < lists.length) {
+        PostingList list = lists[i];
+        positions[i] = list.seek(positions[i], target);
+        if (positions[i] == list.size()) {
+          return NO_ID;
+        }
+        int id = list.get(positions[i]);
+        if (id == target) {
+          agreed++;
+        } else {
+          target = id;
+          agreed = 1;
+        }
+        i = i + 1 == lists.length ? 0 : i + 1;
+      }
+      return target;
+    }
+  }
+
+  /**
+   * Estimate how many candidates a query would produce, without intersecting anything.
+   *
+   * @param query The query string, at least GRAM_LENGTH characters long.
+   * @return The length of the shortest posting list among the query's trigrams.
+   */
+  int estimate(String query) {
+    int shortest = Integer.MAX_VALUE;
+    for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+      PostingList list = postings.get(gramAt(query, i));
+      if (list == null) {
+        return 0;
+      }
+      shortest = Math.min(shortest, list.size());
+    }
+    return shortest;
+  }
+
+  private static Long gramAt(String value, int start) {
+    return ((long) value.charAt(start) << 32) | ((long) value.charAt(start + 1) << 16)
+        | value.charAt(start + 2);
+  }
+}
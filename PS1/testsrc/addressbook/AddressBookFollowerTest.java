@@ -0,0 +1,182 @@
+package addressbook;
+
+import static org.junit.Assert.assertEquals;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/*
+ * The writer is a real AddressBookJournal without background compaction, and the follower does
+ * not poll, so every compaction and catch-up happens exactly where the test puts it.
+ */
+public class AddressBookFollowerTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File directory;
+  private AddressBookJournal journal;
+  private AddressBook addressBook;
+  private AddressBookFollower follower;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.newFolder();
+    journal = journal(directory);
+    addressBook = journal.open();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (follower != null) {
+      follower.close();
+    }
+  }
+
+  private static AddressBookJournal journal(File directory) {
+    return new AddressBookJournal.Builder(directory.getPath())
+        .compactInterval(0, TimeUnit.MILLISECONDS).build();
+  }
+
+  private static AddressBookFollower follower(File directory) throws IOException {
+    AddressBookFollower follower = new AddressBookFollower.Builder(directory.getPath())
+        .pollInterval(0, TimeUnit.MILLISECONDS).build();
+    follower.open();
+    return follower;
+  }
+
+  private static BookEntry entry(int i) {
+    return new BookEntry.Builder("Contact " + i).phoneNumber("646-226-" + (1000 + i))
+        .note("note " + i).build();
+  }
+
+  private void assertFollows() throws IOException {
+    assertEquals(addressBook.getChangeSequence(), follower.catchUp());
+    assertEquals(addressBook.size(), follower.size());
+    assertEquals(addressBook.toString(), follower.toString());
+  }
+
+  @Test
+  public void testOpenLoadsSnapshotAndLog() throws IOException {
+    for (int i = 0; i < 5; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    journal.compact();
+    addressBook.addEntry(entry(5));
+    addressBook.removeEntryById(2);
+
+    follower = follower(directory);
+    assertEquals(addressBook.getChangeSequence(), follower.getSequence());
+    assertEquals(addressBook.toString(), follower.toString());
+  }
+
+  @Test
+  public void testCatchUpAppliesNewRecords() throws IOException {
+    follower = follower(directory);
+    assertFollows();
+    for (int i = 0; i < 10; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    assertFollows();
+    addressBook.updateEntryById(4, entry(40));
+    addressBook.removeEntryById(7);
+    assertFollows();
+    List<BookEntry> found = follower.searchEntry("Contact 40");
+    assertEquals(1, found.size());
+    assertEquals(4, found.get(0).getId());
+    assertEquals(4, follower.getEntryById(4).getId());
+
+    addressBook.clear();
+    addressBook.addEntry(entry(0));
+    assertFollows();
+  }
+
+  @Test
+  public void testCatchUpAcrossRotation() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    follower = follower(directory);
+    for (int i = 3; i < 6; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    // the log the follower holds is rotated and deleted with records it has not read yet
+    journal.compact();
+    for (int i = 6; i < 9; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    assertFollows();
+
+    // and again, with nothing left to read in the rotated log
+    journal.compact();
+    addressBook.addEntry(entry(9));
+    assertFollows();
+  }
+
+  @Test
+  public void testReloadOnGap() throws IOException {
+    addressBook.addEntry(entry(0));
+    follower = follower(directory);
+    addressBook.addEntry(entry(1));
+    journal.compact();
+    // records 3 and 4 live only in a log rotated and deleted before the follower could open it
+    addressBook.addEntry(entry(2));
+    addressBook.removeEntryById(0);
+    journal.compact();
+    addressBook.addEntry(entry(3));
+    assertFollows();
+    assertEquals(3, follower.size());
+  }
+
+  @Test
+  public void testTornLastLineIsReadAgain() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    // copy the records into a directory of its own, the last one cut in the middle
+    byte[] log = Files.readAllBytes(AddressBookJournal.logOf(directory.toPath()));
+    String text = new String(log, StandardCharsets.UTF_8);
+    int lastLine = text.lastIndexOf('\n', text.length() - 2) + 1;
+    int cut = lastLine + (text.length() - lastLine) / 2;
+    File copy = folder.newFolder();
+    Path copiedLog = AddressBookJournal.logOf(copy.toPath());
+    Files.write(copiedLog, text.substring(0, cut).getBytes(StandardCharsets.UTF_8));
+
+    follower = follower(copy);
+    assertEquals(2, follower.size());
+    assertEquals(2, follower.catchUp());
+
+    Files.write(copiedLog, text.substring(cut).getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    assertEquals(3, follower.catchUp());
+    assertEquals(addressBook.toString(), follower.toString());
+  }
+
+  @Test
+  public void testBackgroundCatchUpAfterCloseIsQuiet() throws IOException {
+    follower = follower(directory);
+    follower.close();
+
+    PrintStream err = System.err;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setErr(new PrintStream(printed, true));
+    try {
+      // a run of the poller which was already due when the follower was closed
+      follower.catchUpInBackground();
+    } finally {
+      System.setErr(err);
+    }
+    assertEquals("", printed.toString());
+  }
+}
@@ -0,0 +1,231 @@
+package addressbook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/*
+ * A journal which is never closed stands for a process which crashed: opening another journal on
+ * the same directory has to recover the book from whatever the files hold.
+ */
+public class AddressBookJournalTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private AddressBookJournal journal(File directory) {
+    return new AddressBookJournal.Builder(directory.getPath())
+        .compactInterval(0, TimeUnit.MILLISECONDS).build();
+  }
+
+  private static BookEntry entry(int i) {
+    return new BookEntry.Builder("Contact " + i).phoneNumber("646-226-" + (1000 + i))
+        .note("note " + i).build();
+  }
+
+  @Test
+  public void testRecoverFromLog() throws IOException {
+    File directory = folder.newFolder();
+    AddressBook addressBook = journal(directory).open();
+    for (int i = 0; i < 5; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    addressBook.updateEntryById(1, entry(10));
+    addressBook.removeEntryById(3);
+
+    AddressBook recovered = journal(directory).open();
+    assertEquals(4, recovered.size());
+    assertEquals(addressBook.toString(), recovered.toString());
+    assertTrue(recovered.getEntryById(1).hasSameContent(entry(10)));
+  }
+
+  @Test
+  public void testCompactFoldsLogIntoSnapshot() throws IOException {
+    File directory = folder.newFolder();
+    AddressBookJournal journal = journal(directory);
+    AddressBook addressBook = journal.open();
+    for (int i = 0; i < 5; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    journal.compact();
+    Path log = directory.toPath().resolve("journal.log");
+    assertEquals(0, Files.size(log));
+    assertTrue(Files.exists(directory.toPath().resolve("snapshot.json")));
+    assertEquals(2, directory.list().length);
+
+    addressBook.removeEntryById(0);
+    addressBook.addEntry(entry(5));
+    AddressBook recovered = journal(directory).open();
+    assertEquals(addressBook.toString(), recovered.toString());
+
+    // ids handed out after recovery follow the ones before
+    addressBook.addEntry(entry(6));
+    recovered.addEntry(entry(6));
+    assertEquals(addressBook.toString(), recovered.toString());
+  }
+
+  @Test
+  public void testCompactInterleavedWithAppends() throws IOException {
+    File directory = folder.newFolder();
+    AddressBookJournal journal = journal(directory);
+    AddressBook addressBook = journal.open();
+    for (int i = 0; i < 200; i++) {
+      addressBook.addEntry(entry(i));
+      if (i % 3 == 2) {
+        addressBook.removeEntryById(i - 1);
+      }
+      if (i % 7 == 0) {
+        addressBook.updateEntryById(i, entry(1000 + i));
+      }
+      if (i % 17 == 0) {
+        journal.compact();
+      }
+    }
+
+    AddressBook recovered = journal(directory).open();
+    assertEquals(addressBook.size(), recovered.size());
+    assertEquals(addressBook.toString(), recovered.toString());
+  }
+
+  @Test
+  public void testRecoverFromRotatedLog() throws IOException {
+    File directory = folder.newFolder();
+    AddressBookJournal journal = journal(directory);
+    AddressBook addressBook = journal.open();
+    for (int i = 0; i < 3; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    journal.compact();
+    for (int i = 3; i < 6; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    // a compaction which crashed after rotating the log, before folding it into the snapshot
+    Path log = directory.toPath().resolve("journal.log");
+    Files.move(log, directory.toPath().resolve("journal.log.6"));
+
+    AddressBookJournal reopened = journal(directory);
+    AddressBook recovered = reopened.open();
+    assertEquals(addressBook.toString(), recovered.toString());
+
+    recovered.addEntry(entry(6));
+    reopened.compact();
+    assertEquals(2, directory.list().length);
+    assertEquals(recovered.toString(), journal(directory).open().toString());
+  }
+
+  @Test
+  public void testTornRecordIsDropped() throws IOException {
+    File directory = folder.newFolder();
+    AddressBook addressBook = journal(directory).open();
+    for (int i = 0; i < 3; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    Path log = directory.toPath().resolve("journal.log");
+    truncate(log, Files.size(log) - 10);
+
+    AddressBook recovered = journal(directory).open();
+    assertEquals(2, recovered.size());
+    assertFalse(recovered.searchEntry("Contact 2").size() > 0);
+
+    // the torn bytes are gone, so the next record starts on a line of its own
+    recovered.addEntry(entry(3));
+    AddressBook again = journal(directory).open();
+    assertEquals(recovered.toString(), again.toString());
+    assertEquals(3, again.size());
+  }
+
+  @Test
+  public void testRecordWithoutNewlineIsKept() throws IOException {
+    File directory = folder.newFolder();
+    AddressBook addressBook = journal(directory).open();
+    for (int i = 0; i < 3; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    Path log = directory.toPath().resolve("journal.log");
+    truncate(log, Files.size(log) - 1);
+
+    AddressBook recovered = journal(directory).open();
+    assertEquals(addressBook.toString(), recovered.toString());
+
+    recovered.addEntry(entry(3));
+    AddressBook again = journal(directory).open();
+    assertEquals(recovered.toString(), again.toString());
+    assertEquals(4, again.size());
+  }
+
+  @Test
+  public void testRecordTornInsideCharacterIsDropped() throws IOException {
+    File directory = folder.newFolder();
+    AddressBook addressBook = journal(directory).open();
+    addressBook.addEntry(entry(0));
+    addressBook.addEntry(
+        new BookEntry.Builder("Zo\u00eb Br\u00fbl\u00e9").note("\u4e2d\u6587").build());
+    Path log = directory.toPath().resolve("journal.log");
+    byte[] bytes = Files.readAllBytes(log);
+    // cut the last record after the first byte of its last multi-byte character
+    int cut = bytes.length - 1;
+    while ((bytes[cut] & 0xc0) != 0xc0) {
+      cut--;
+    }
+    truncate(log, cut + 1);
+
+    AddressBook recovered = journal(directory).open();
+    assertEquals(1, recovered.size());
+    assertTrue(recovered.getEntryById(0).hasSameContent(entry(0)));
+
+    recovered.addEntry(new BookEntry.Builder("Zo\u00eb").build());
+    AddressBook again = journal(directory).open();
+    assertEquals(recovered.toString(), again.toString());
+    assertEquals(1, again.searchEntry("Zo\u00eb").size());
+  }
+
+  @Test
+  public void testCloseCompacts() throws IOException {
+    File directory = folder.newFolder();
+    AddressBookJournal journal = journal(directory);
+    AddressBook addressBook = journal.open();
+    for (int i = 0; i < 3; i++) {
+      addressBook.addEntry(entry(i));
+    }
+    journal.close();
+    assertEquals(0, Files.size(directory.toPath().resolve("journal.log")));
+    assertEquals(addressBook.toString(), journal(directory).open().toString());
+  }
+
+  @Test
+  public void testBackgroundCompactionAfterCloseIsQuiet() throws IOException {
+    File directory = folder.newFolder();
+    AddressBookJournal journal = journal(directory);
+    AddressBook addressBook = journal.open();
+    addressBook.addEntry(entry(0));
+    journal.close();
+
+    PrintStream err = System.err;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setErr(new PrintStream(printed, true));
+    try {
+      // a run of the compactor which was already due when the journal was closed
+      journal.compactInBackground();
+    } finally {
+      System.setErr(err);
+    }
+    assertEquals("", printed.toString());
+  }
+
+  private static void truncate(Path file, long length) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(length);
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package addressbook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+/*
+ * Segments hold 1024 entries, so books of a few thousand entries cross segment boundaries. Every
+ * change is also made to an AddressBook, whose ids and order the concurrent book has to match.
+ */
+public class ConcurrentAddressBookTest {
+  private static final int SEGMENT_SIZE = 1024;
+
+  private final ConcurrentAddressBook addressBook = new ConcurrentAddressBook();
+  private final AddressBook expected = new AddressBook();
+
+  private static BookEntry entry(int i) {
+    return new BookEntry.Builder("Contact " + i).phoneNumber("646-226-" + (1000 + i))
+        .note("note " + i).build();
+  }
+
+  private void add(int from, int to) {
+    for (int i = from; i < to; i++) {
+      assertTrue(addressBook.addEntry(entry(i)));
+      expected.addEntry(entry(i));
+    }
+  }
+
+  private void remove(int id) {
+    assertEquals(id, addressBook.removeEntryById(id).getId());
+    expected.removeEntryById(id);
+  }
+
+  private void assertMatches() {
+    assertEquals(expected.size(), addressBook.size());
+    assertEquals(expected.toString(), addressBook.toString());
+    assertEquals(expected.searchEntry("Contact 1").toString(),
+        addressBook.searchEntry("Contact 1").toString());
+  }
+
+  private static List<BookEntry> list(Iterable<BookEntry> entries) {
+    List<BookEntry> list = new ArrayList<>();
+    for (BookEntry bookEntry : entries) {
+      list.add(bookEntry);
+    }
+    return list;
+  }
+
+  @Test
+  public void testAcrossSegmentBoundaries() {
+    add(0, 3 * SEGMENT_SIZE + 10);
+    assertMatches();
+    int[] boundaries = {SEGMENT_SIZE - 1, SEGMENT_SIZE, 2 * SEGMENT_SIZE - 1, 2 * SEGMENT_SIZE,
+        3 * SEGMENT_SIZE};
+    for (int id : boundaries) {
+      assertTrue(addressBook.getEntryById(id).hasSameContent(entry(id)));
+    }
+    assertFalse(addressBook.addEntry(entry(SEGMENT_SIZE)));
+
+    remove(SEGMENT_SIZE - 1);
+    remove(2 * SEGMENT_SIZE);
+    BookEntry updated = entry(8000);
+    assertTrue(addressBook.updateEntryById(SEGMENT_SIZE, updated).hasSameContent(
+        entry(SEGMENT_SIZE)));
+    expected.updateEntryById(SEGMENT_SIZE, entry(8000));
+    assertEquals(SEGMENT_SIZE, updated.getId());
+    assertTrue(addressBook.removeEntry(addressBook.getEntryById(2 * SEGMENT_SIZE - 1)));
+    expected.removeEntryById(2 * SEGMENT_SIZE - 1);
+    assertMatches();
+
+    try {
+      addressBook.getEntryById(SEGMENT_SIZE - 1);
+      fail("Got a removed entry");
+    } catch (NoSuchElementException e) {
+      // removed above
+    }
+    try {
+      addressBook.removeEntryById(2 * SEGMENT_SIZE);
+      fail("Removed an entry twice");
+    } catch (NoSuchElementException e) {
+      // removed above
+    }
+
+    // the content of a removed entry can be added again, with a new id at the end
+    assertTrue(addressBook.addEntry(entry(SEGMENT_SIZE - 1)));
+    expected.addEntry(entry(SEGMENT_SIZE - 1));
+    assertEquals(3 * SEGMENT_SIZE + 10, addressBook.searchEntry("Contact 1023").get(0).getId());
+    assertMatches();
+  }
+
+  @Test
+  public void testCompactionAfterMassRemoval() {
+    add(0, 4 * SEGMENT_SIZE);
+    Iterable<BookEntry> before = addressBook.entries();
+    // keep one entry in eight, spread over every segment, so the holes get squeezed out
+    for (int id = 0; id < 4 * SEGMENT_SIZE; id++) {
+      if (id % 8 != 5) {
+        remove(id);
+      }
+    }
+    assertEquals(SEGMENT_SIZE / 2, addressBook.size());
+    assertMatches();
+    for (int id = 5; id < 4 * SEGMENT_SIZE; id += 8) {
+      assertEquals(id, addressBook.getEntryById(id).getId());
+    }
+    assertEquals(4 * SEGMENT_SIZE, list(before).size());
+
+    // positions are found again after compaction, for updates, removes and appends
+    addressBook.updateEntryById(13, entry(8000));
+    expected.updateEntryById(13, entry(8000));
+    remove(4 * SEGMENT_SIZE - 3);
+    add(4 * SEGMENT_SIZE, 5 * SEGMENT_SIZE);
+    assertEquals(4 * SEGMENT_SIZE, addressBook.getEntryById(4 * SEGMENT_SIZE).getId());
+    assertMatches();
+
+    addressBook.clear();
+    expected.clear();
+    add(0, 10);
+    assertMatches();
+  }
+
+  @Test
+  public void testOldSnapshotIsUnchanged() {
+    add(0, SEGMENT_SIZE + 100);
+    Iterable<BookEntry> old = addressBook.entries();
+    List<BookEntry> oldEntries = list(old);
+    Iterator<BookEntry> reading = old.iterator();
+    for (int i = 0; i < 50; i++) {
+      reading.next();
+    }
+
+    // appends write past the end of the segment the old snapshot shares, removes and updates
+    // copy it, and compaction replaces every segment
+    add(SEGMENT_SIZE + 100, 2 * SEGMENT_SIZE + 100);
+    for (int id = 0; id < 2 * SEGMENT_SIZE; id += 2) {
+      remove(id);
+    }
+    addressBook.updateEntryById(2 * SEGMENT_SIZE + 1, entry(8000));
+    expected.updateEntryById(2 * SEGMENT_SIZE + 1, entry(8000));
+    for (int id = 1; id < 2 * SEGMENT_SIZE; id += 2) {
+      remove(id);
+    }
+    add(2 * SEGMENT_SIZE + 100, 2 * SEGMENT_SIZE + 200);
+    assertMatches();
+
+    assertEquals(oldEntries, list(old));
+    int position = 50;
+    while (reading.hasNext()) {
+      assertSame(oldEntries.get(position++), reading.next());
+    }
+    assertEquals(oldEntries.size(), position);
+  }
+
+  @Test(timeout = 60000)
+  public void testReadersWhileWriting() throws Exception {
+    add(0, SEGMENT_SIZE);
+    AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<?>> readers = new ArrayList<>();
+      for (int t = 0; t < 2; t++) {
+        readers.add(executor.submit(() -> {
+          while (!done.get()) {
+            // every snapshot is in id order and holds no removed entry
+            List<BookEntry> found = list(addressBook.entries());
+            for (int i = 1; i < found.size(); i++) {
+              assertTrue(found.get(i - 1).getId() < found.get(i).getId());
+            }
+            for (BookEntry bookEntry : addressBook.searchEntry("Contact")) {
+              assertNotNull(bookEntry);
+            }
+          }
+          return null;
+        }));
+      }
+      try {
+        for (int round = 0; round < 4; round++) {
+          int first = SEGMENT_SIZE * (round + 1);
+          add(first, first + SEGMENT_SIZE);
+          for (int id = first - SEGMENT_SIZE; id < first; id++) {
+            remove(id);
+          }
+        }
+      } finally {
+        done.set(true);
+      }
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertMatches();
+  }
+}
@@ -0,0 +1,80 @@
+package addressbook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import com.google.gson.JsonSyntaxException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/*
+ * Every EntryBook reads the same JSON files, so each check runs against all of them.
+ */
+public class EntryBookTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<EntryBook> books() {
+    return Arrays.asList(new AddressBook(), new ConcurrentAddressBook(), new CompactAddressBook(),
+        new OffHeapAddressBook());
+  }
+
+  private static BookEntry entry(int i) {
+    return new BookEntry.Builder("Contact " + i).phoneNumber("646-226-" + (1000 + i))
+        .note("note " + i).build();
+  }
+
+  @Test
+  public void testTruncatedFileAddsNothing() throws IOException {
+    AddressBook source = new AddressBook();
+    for (int i = 0; i < 50; i++) {
+      source.addEntry(entry(i));
+    }
+    File file = folder.newFile("book.json");
+    source.saveToFile(file.getPath());
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      channel.truncate(Files.size(file.toPath()) / 2);
+    }
+
+    for (EntryBook book : books()) {
+      book.addEntry(entry(100));
+      String before = book.toString();
+      try {
+        book.readFromFile(file.getPath());
+        fail(book.getClass().getSimpleName() + " read a truncated file");
+      } catch (JsonSyntaxException expected) {
+        // the entries before the cut must not be left behind
+      }
+      assertEquals(book.getClass().getSimpleName(), 1, book.size());
+      assertEquals(book.getClass().getSimpleName(), before, book.toString());
+      assertEquals(0, book.searchEntry("Contact 2").size());
+
+      // and the book goes on as before
+      book.addEntry(entry(101));
+      assertEquals(2, book.size());
+    }
+  }
+
+  @Test
+  public void testReadAfterSave() throws IOException {
+    AddressBook source = new AddressBook();
+    for (int i = 0; i < 50; i++) {
+      source.addEntry(entry(i));
+    }
+    File file = folder.newFile("book.json");
+    source.saveToFile(file.getPath());
+
+    for (EntryBook book : books()) {
+      book.readFromFile(file.getPath());
+      assertEquals(source.size(), book.size());
+      assertEquals(source.toString(), book.toString());
+    }
+  }
+}
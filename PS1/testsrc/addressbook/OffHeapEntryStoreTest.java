@@ -0,0 +1,173 @@
+package addressbook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/*
+ * Every check reads the records back out of the slabs, so the expected entries are kept on the
+ * heap, by id, next to the store. Entries use non-ASCII values so UTF-8 lengths differ from string
+ * lengths.
+ */
+public class OffHeapEntryStoreTest {
+  private static final int SLAB_SIZE = 1 << 24;
+
+  private final OffHeapEntryStore store = new OffHeapEntryStore();
+  private final Map<Integer, BookEntry> expected = new TreeMap<>();
+
+  private static BookEntry entry(int i) {
+    return new BookEntry.Builder("Zo\u00eb " + i).phoneNumber("646-226-" + (1000 + i))
+        .postalAddress("\u5317\u4eac " + i)
+        .note(i % 3 == 0 ? null : "caf\u00e9 \ud83d\ude00 " + i).build();
+  }
+
+  /** An entry whose record takes about a hundred kilobytes, varying with i. */
+  private static BookEntry largeEntry(int i) {
+    StringBuilder note = new StringBuilder();
+    for (int j = 0; j < 30000 + i * 37; j++) {
+      note.append(j % 2 == 0 ? '\u00e9' : '\u4e2d');
+    }
+    return new BookEntry.Builder("Large " + i).note(note.toString()).build();
+  }
+
+  private void add(BookEntry bookEntry, int id) {
+    assertTrue(store.add(bookEntry, id));
+    expected.put(id, bookEntry);
+  }
+
+  private void remove(int id) {
+    assertTrue(expected.remove(id).hasSameContent(store.remove(id)));
+  }
+
+  private void assertStored() {
+    assertEquals(expected.size(), store.size());
+    for (Map.Entry<Integer, BookEntry> entry : expected.entrySet()) {
+      BookEntry stored = store.get(entry.getKey());
+      assertEquals((int) entry.getKey(), stored.getId());
+      assertTrue(entry.getValue().hasSameContent(stored));
+    }
+    List<Integer> ids = new ArrayList<>();
+    for (BookEntry bookEntry : store) {
+      ids.add(bookEntry.getId());
+    }
+    List<Integer> sorted = new ArrayList<>(expected.keySet());
+    // ids are added in increasing order in these tests, so insertion order is id order
+    assertEquals(sorted, ids);
+  }
+
+  private List<Integer> search(String query) {
+    List<BookEntry> results = new ArrayList<>();
+    store.search(query.getBytes(StandardCharsets.UTF_8), results);
+    List<Integer> ids = new ArrayList<>();
+    for (BookEntry bookEntry : results) {
+      ids.add(bookEntry.getId());
+    }
+    return ids;
+  }
+
+  @Test
+  public void testRoundTripAfterCompaction() {
+    for (int i = 0; i < 2000; i++) {
+      add(entry(i), i);
+    }
+    assertStored();
+    assertFalse(store.add(entry(7), 5000));
+
+    // removing three in four brings the live positions under a quarter and compacts the store
+    for (int i = 0; i < 2000; i++) {
+      if (i % 4 != 1) {
+        remove(i);
+      }
+    }
+    assertStored();
+    for (int i = 0; i < 2000; i += 4) {
+      assertNull(store.get(i));
+      assertNull(store.remove(i));
+    }
+    assertEquals(Collections.singletonList(1001), search("\u5317\u4eac 1001"));
+    assertEquals(Collections.singletonList(1001), search("\ud83d\ude00 1001"));
+    assertEquals(Collections.emptyList(), search("\ud83d\ude00 1000"));
+    assertEquals(500, search("Zo\u00eb").size());
+
+    // the content table is rebuilt: removed content can come back, live content cannot
+    assertFalse(store.add(entry(1), 5000));
+    add(entry(0), 2000);
+    add(entry(2), 2001);
+    remove(1);
+    add(entry(1), 2002);
+    assertStored();
+  }
+
+  @Test
+  public void testRecordsAcrossSlabs() {
+    // about 180 records fill a slab, so the records run over three slabs and end wherever the
+    // varying sizes put them
+    int count = 450;
+    for (int i = 0; i < count; i++) {
+      add(largeEntry(i), i);
+    }
+    assertStored();
+    assertEquals(Collections.singletonList(200), search("Large 200"));
+
+    // removing most of the bytes compacts the records of the later slabs down into the first
+    // ones, moving records across slab boundaries
+    for (int i = 0; i < count; i++) {
+      if (i % 3 != 2) {
+        remove(i);
+      }
+    }
+    assertStored();
+    assertEquals(Collections.singletonList(302), search("Large 302"));
+
+    // and new records go after the last one moved, filling three slabs again
+    for (int i = count; i < count + 200; i++) {
+      add(largeEntry(i), i);
+    }
+    assertStored();
+    long bytes = 0;
+    for (BookEntry bookEntry : store) {
+      bytes += bookEntry.getNote().getBytes(StandardCharsets.UTF_8).length;
+    }
+    assertTrue(bytes > 2L * SLAB_SIZE);
+  }
+
+  @Test
+  public void testRandomRemovesKeepLookups() {
+    Random random = new Random(42);
+    int nextId = 0;
+    List<Integer> live = new ArrayList<>();
+    for (int step = 0; step < 20000; step++) {
+      if (live.isEmpty() || random.nextInt(5) < 3) {
+        // ids skip ahead at random so that they collide in the position map
+        nextId += 1 + random.nextInt(1000);
+        add(entry(step), nextId);
+        live.add(nextId);
+      } else {
+        int id = live.remove(random.nextInt(live.size()));
+        remove(id);
+        assertNull(store.get(id));
+      }
+      if (step % 2000 == 0) {
+        assertStored();
+      }
+    }
+    assertStored();
+
+    for (int id : live) {
+      remove(id);
+    }
+    assertEquals(0, store.size());
+    assertFalse(store.iterator().hasNext());
+    add(entry(0), 0);
+    assertStored();
+  }
+}
@@ -0,0 +1,210 @@
+package addressbook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/*
+ * Every book runs in a pool of its own, so a shard task stuck in one test cannot hold up the
+ * common pool for the others.
+ */
+public class ShardedAddressBookTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ForkJoinPool pool;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    pool = new ForkJoinPool(2);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    pool.shutdownNow();
+  }
+
+  private static BookEntry entry(int i) {
+    return new BookEntry.Builder("Contact " + i).phoneNumber("646-226-" + (1000 + i))
+        .note("note " + i).build();
+  }
+
+  private static void assertInIdOrder(List<BookEntry> found) {
+    for (int i = 1; i < found.size(); i++) {
+      assertTrue(found.get(i - 1).getId() < found.get(i).getId());
+    }
+  }
+
+  private static void await(List<Future<?>> futures) throws Exception {
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        throw (Exception) e.getCause();
+      }
+    }
+  }
+
+  @Test
+  public void testSearchGathersInIdOrder() {
+    ShardedAddressBook addressBook = new ShardedAddressBook(4, pool);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(addressBook.addEntry(entry(i)));
+    }
+    assertFalse(addressBook.addEntry(entry(7)));
+    for (int i = 0; i < 100; i += 3) {
+      addressBook.removeEntryById(i);
+    }
+    addressBook.updateEntryById(10, entry(1000));
+
+    List<BookEntry> found = addressBook.searchEntry("");
+    assertEquals(addressBook.size(), found.size());
+    assertInIdOrder(found);
+    assertEquals(66, found.size());
+    assertEquals(1, found.get(0).getId());
+    assertEquals(98, found.get(found.size() - 1).getId());
+
+    List<BookEntry> tens = addressBook.searchEntry("Contact 1");
+    assertInIdOrder(tens);
+    // 1, 10 as Contact 1000, and 11 to 19 but for the multiples of 3 removed
+    assertEquals(8, tens.size());
+    assertTrue(addressBook.getEntryById(10).hasSameContent(entry(1000)));
+  }
+
+  @Test
+  public void testConcurrentAddAndClear() throws Exception {
+    ShardedAddressBook addressBook = new ShardedAddressBook(4, pool);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 3; t++) {
+      int first = t * 1000;
+      futures.add(executor.submit(() -> {
+        for (int i = first; i < first + 1000; i++) {
+          addressBook.addEntry(entry(i));
+          addressBook.addEntry(entry(i));
+        }
+        return null;
+      }));
+    }
+    futures.add(executor.submit(() -> {
+      for (int i = 0; i < 50; i++) {
+        addressBook.clear();
+        Thread.yield();
+      }
+      return null;
+    }));
+    await(futures);
+
+    // whatever survived the last clear is consistent: the ids are unique and reachable, and the
+    // fingerprints match the entries
+    List<BookEntry> found = addressBook.searchEntry("");
+    assertEquals(addressBook.size(), found.size());
+    assertInIdOrder(found);
+    for (BookEntry bookEntry : found) {
+      assertTrue(bookEntry.hasSameContent(addressBook.getEntryById(bookEntry.getId())));
+    }
+    int added = 0;
+    for (int i = 0; i < 3000; i++) {
+      if (addressBook.addEntry(entry(i))) {
+        added++;
+      }
+    }
+    assertEquals(3000 - found.size(), added);
+    assertEquals(3000, addressBook.size());
+
+    addressBook.clear();
+    assertEquals(0, addressBook.size());
+    assertTrue(addressBook.addEntry(entry(0)));
+    assertEquals(0, addressBook.searchEntry("").get(0).getId());
+  }
+
+  @Test
+  public void testSaveAndReadAcrossShardCounts() throws IOException {
+    ShardedAddressBook saved = new ShardedAddressBook(3, pool);
+    for (int i = 0; i < 200; i++) {
+      saved.addEntry(entry(i));
+    }
+    for (int i = 0; i < 200; i += 7) {
+      saved.removeEntryById(i);
+    }
+    File directory = folder.newFolder();
+    saved.saveToDirectory(directory.getPath(), false);
+
+    for (int shardCount : new int[] {1, 3, 5}) {
+      ShardedAddressBook read = new ShardedAddressBook(shardCount, pool);
+      read.addEntry(entry(5000));
+      read.readFromDirectory(directory.getPath());
+      assertEquals(saved.size(), read.size());
+      assertEquals(saved.toString(), read.toString());
+      assertTrue(read.getEntryById(199).hasSameContent(entry(199)));
+
+      // ids and fingerprints carry on from the ones read
+      assertFalse(read.addEntry(entry(1)));
+      assertTrue(read.addEntry(entry(200)));
+      assertEquals(200, read.searchEntry("Contact 200").get(0).getId());
+    }
+
+    // saving with fewer shards drops the files of the shards gone
+    ShardedAddressBook fewer = new ShardedAddressBook(2, pool);
+    fewer.readFromDirectory(directory.getPath());
+    fewer.saveToDirectory(directory.getPath(), true);
+    assertEquals(2, directory.list().length);
+    ShardedAddressBook again = new ShardedAddressBook(4, pool);
+    again.readFromDirectory(directory.getPath());
+    assertEquals(saved.toString(), again.toString());
+  }
+
+  @Test(timeout = 20000)
+  public void testReadWhileSearching() throws Exception {
+    // A pool with one worker, which the searches keep busy waiting for shard locks
+    ForkJoinPool single = new ForkJoinPool(1);
+    try {
+      ShardedAddressBook saved = new ShardedAddressBook(4, single);
+      for (int i = 0; i < 100; i++) {
+        saved.addEntry(entry(i));
+      }
+      File directory = folder.newFolder();
+      saved.saveToDirectory(directory.getPath());
+
+      ShardedAddressBook addressBook = new ShardedAddressBook(4, single);
+      AtomicBoolean done = new AtomicBoolean();
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 3; t++) {
+        futures.add(executor.submit(() -> {
+          while (!done.get()) {
+            assertInIdOrder(addressBook.searchEntry("Contact"));
+          }
+          return null;
+        }));
+      }
+      try {
+        for (int i = 0; i < 50; i++) {
+          addressBook.readFromDirectory(directory.getPath());
+        }
+      } finally {
+        done.set(true);
+      }
+      await(futures);
+      assertEquals(saved.toString(), addressBook.toString());
+    } finally {
+      single.shutdownNow();
+    }
+  }
+}